@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.cli;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.ExportTable;
+import ru.yandex.practicum.filmorate.service.BulkExportService;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Консольный режим выгрузки: java -jar filmorate.jar --spring.main.web-application-type=none \
+//     --export=/data/dump [--export-tables=films,likes] [--export-gzip] [--export-parallelism=2]
+// Без --export-tables выгружаются все таблицы, после выгрузки приложение завершается. Без --export ничего не делает
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BulkExportRunner implements ApplicationRunner {
+
+    private static final String EXPORT_OPTION = "export";
+    private static final String TABLES_OPTION = "export-tables";
+    private static final String GZIP_OPTION = "export-gzip";
+    private static final String PARALLELISM_OPTION = "export-parallelism";
+
+    private final BulkExportService bulkExportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${filmorate.export.parallelism:2}")
+    private int defaultParallelism;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> directories = args.getOptionValues(EXPORT_OPTION);
+        if (directories == null || directories.isEmpty()) {
+            return;
+        }
+
+        int exitCode = 0;
+        try {
+            List<ExportTable> tables = args.containsOption(TABLES_OPTION)
+                    ? Arrays.stream(args.getOptionValues(TABLES_OPTION).getFirst().split(","))
+                    .map(ExportTable::from)
+                    .distinct()
+                    .toList()
+                    : List.of(ExportTable.values());
+            int parallelism = args.containsOption(PARALLELISM_OPTION)
+                    ? Integer.parseInt(args.getOptionValues(PARALLELISM_OPTION).getFirst())
+                    : defaultParallelism;
+            Path directory = Path.of(directories.getFirst());
+
+            long start = System.nanoTime();
+            Map<ExportTable, Long> rows = bulkExportService.exportToDirectory(directory, tables,
+                    args.containsOption(GZIP_OPTION), parallelism);
+            log.info("Выгрузка в {} завершена за {} мс: {}", directory, (System.nanoTime() - start) / 1_000_000, rows);
+        } catch (RuntimeException e) {
+            log.error("Выгрузка прервана: {}", e.getMessage());
+            exitCode = 2;
+        }
+
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.cli;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.ImportReportDTO;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.ImportEntity;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Консольный режим импорта: java -jar filmorate.jar --spring.main.web-application-type=none \
+//     --import=users:users.csv --import=films:films.ndjson [--import-chunk-size=10000]
+// Файлы импортируются по порядку, после чего приложение завершается. Без --import ничего не делает
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BulkImportRunner implements ApplicationRunner {
+
+    private static final String IMPORT_OPTION = "import";
+    private static final String CHUNK_SIZE_OPTION = "import-chunk-size";
+
+    private final BulkImportService bulkImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> imports = args.getOptionValues(IMPORT_OPTION);
+        if (imports == null || imports.isEmpty()) {
+            return;
+        }
+
+        int exitCode = 0;
+        try {
+            Integer chunkSize = args.containsOption(CHUNK_SIZE_OPTION)
+                    ? Integer.valueOf(args.getOptionValues(CHUNK_SIZE_OPTION).getFirst())
+                    : null;
+            for (String spec : imports) {
+                ImportReportDTO report = importFile(spec, chunkSize);
+                if (report.getRejected() > 0) {
+                    exitCode = 1;
+                    report.getErrors().forEach(error ->
+                            log.warn("Строка {}: {}", error.getLine(), error.getMessage()));
+                }
+            }
+        } catch (RuntimeException | IOException e) {
+            log.error("Импорт прерван: {}", e.getMessage());
+            exitCode = 2;
+        }
+
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    // Формат аргумента: <films|users|likes|friends>:<путь к файлу>, формат файла определяется по расширению
+    private ImportReportDTO importFile(String spec, Integer chunkSize) throws IOException {
+        int separator = spec.indexOf(':');
+        if (separator <= 0 || separator == spec.length() - 1) {
+            throw new ValidationException("Ожидался аргумент вида --import=films:/path/films.csv, получено: " + spec);
+        }
+        ImportEntity entity = ImportEntity.from(spec.substring(0, separator));
+        Path file = Path.of(spec.substring(separator + 1));
+        try (InputStream input = Files.newInputStream(file)) {
+            ImportReportDTO report = bulkImportService.importData(entity, ImportFormat.fromFileName(file.toString()),
+                    input, chunkSize);
+            log.info("Файл {}: обработано {}, записано {}, отклонено {} за {} мс", file, report.getProcessed(),
+                    report.getImported(), report.getRejected(), report.getDurationMs());
+            return report;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.ExportTable;
+import ru.yandex.practicum.filmorate.service.BulkExportService;
+
+@Slf4j
+@RestController
+@RequestMapping("/export")
+@RequiredArgsConstructor
+public class BulkExportController {
+    private final BulkExportService bulkExportService;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    @GetMapping("/{table}")
+    public ResponseEntity<StreamingResponseBody> exportTable(@PathVariable final String table,
+                                                             @RequestParam(defaultValue = "false") final boolean gzip) {
+        log.info("Получен запрос на выгрузку таблицы {}", table);
+        ExportTable exportTable = ExportTable.from(table);
+        return ResponseEntity.ok()
+                .contentType(gzip ? GZIP : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(exportTable.fileName(gzip))
+                        .build()
+                        .toString())
+                .body(output -> bulkExportService.exportTable(exportTable, output, gzip));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dto.ImportReportDTO;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.ImportEntity;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
+
+import java.io.IOException;
+
+@Slf4j
+@RestController
+@RequestMapping("/import")
+@RequiredArgsConstructor
+public class BulkImportController {
+    private final BulkImportService bulkImportService;
+
+    private static final String CSV_MEDIA_TYPE = "text/csv";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    // Тело запроса читается потоком, без @RequestBody, чтобы файл не загружался в память целиком.
+    // Формы не принимаются: Tomcat вычитал бы тело x-www-form-urlencoded при разборе параметров запроса
+    @PostMapping(value = "/{entity}", consumes = {CSV_MEDIA_TYPE, NDJSON_MEDIA_TYPE,
+            MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ImportReportDTO importData(@PathVariable final String entity,
+                                      @RequestParam(required = false) final String format,
+                                      @RequestParam(required = false) final Integer chunkSize,
+                                      HttpServletRequest request) throws IOException {
+        log.info("Получен запрос на импорт {} в формате {}", entity, format);
+        return bulkImportService.importData(ImportEntity.from(entity), getFormat(format, request.getContentType()),
+                request.getInputStream(), chunkSize);
+    }
+
+    // Без параметра format формат определяется по Content-Type. Запрос без Content-Type проходит consumes
+    // как application/octet-stream, поэтому формат тогда обязателен
+    private static ImportFormat getFormat(String format, String contentType) {
+        if (format != null) {
+            return ImportFormat.from(format);
+        }
+        if (contentType == null) {
+            throw new ValidationException("Не указан формат: передайте параметр format или заголовок Content-Type");
+        }
+        return MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(CSV_MEDIA_TYPE))
+                ? ImportFormat.CSV : ImportFormat.NDJSON;
+    }
+}
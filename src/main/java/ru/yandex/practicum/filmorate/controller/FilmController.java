@@ -4,12 +4,17 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
 import ru.yandex.practicum.filmorate.dto.FilmUpdateDTO;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -18,6 +23,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final JsonArrayStreamer jsonArrayStreamer;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -32,15 +41,41 @@ public class FilmController {
         return filmService.update(newFilm);
     }
 
+    // Без after и limit возвращается весь список, как до появления страниц. Курсор следующей страницы
+    // передается в заголовке X-Next-Cursor, чтобы тело ответа осталось массивом
     @GetMapping
-    public Collection<FilmDTO> findAll() {
-        log.info("Получен запрос на получение всех фильмов");
-        return filmService.findAll();
+    public ResponseEntity<List<FilmDTO>> findAll(@RequestParam(required = false) final Long after,
+                                                @RequestParam(required = false) final Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Получен запрос на получение всех фильмов");
+            List<FilmDTO> all = new ArrayList<>();
+            filmService.streamAll(all::add);
+            return ResponseEntity.ok(all);
+        }
+        log.info("Получен запрос на получение фильмов: after={}, limit={}", after, limit);
+        PageDTO<FilmDTO> page = filmService.findAll(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        log.info("Получен запрос на потоковое получение всех фильмов");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArrayStreamer.<FilmDTO>stream(filmService::streamAll));
     }
 
     @GetMapping("/{id}")
-    public FilmDTO getFilmById(@Valid @PathVariable final Long id) {
+    public FilmDTO getFilmById(@Valid @PathVariable final Long id, WebRequest request) {
         log.info("Получен запрос на получение фильма с id={}", id);
+        // Тег берется до чтения фильма: если фильм изменится между ними, клиент получит старый тег и перезапросит
+        if (request.checkNotModified(filmService.getFilmETag(id))) {
+            return null;
+        }
         return filmService.getFilmById(id);
     }
 
@@ -59,9 +94,26 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @GetMapping("/search")
+    public List<FilmDTO> searchFilms(@RequestParam(defaultValue = "") final String q,
+                                     @RequestParam(defaultValue = "10") final Integer count) {
+        log.info("Получен запрос на поиск {} фильмов по запросу '{}'", count, q);
+        return filmService.searchFilms(q, count);
+    }
+
+    // window - за сколько времени вклад лайка уменьшается вдвое, например 1h, 1d, 7d или 30d
+    @GetMapping("/trending")
+    public List<FilmDTO> getTrendingFilms(@RequestParam(defaultValue = "7d") final String window,
+                                          @RequestParam(defaultValue = "10") final Integer count) {
+        log.info("Получен запрос на получение {} фильмов в тренде за окно {}", count, window);
+        return filmService.getTrendingFilms(window, count);
+    }
+
     @GetMapping("/popular")
-    public List<FilmDTO> getPopularFilms(@Valid @RequestParam(defaultValue = "10") final Integer count) {
-        log.info("Получен запрос на получение {} самых популярных фильмов", count);
-        return filmService.getPopularFilms(count);
+    public List<FilmDTO> getPopularFilms(@Valid @RequestParam(defaultValue = "10") final Integer count,
+                                         @RequestParam(required = false) final Integer genreId,
+                                         @RequestParam(required = false) final Integer year) {
+        log.info("Получен запрос на получение {} самых популярных фильмов, жанр {}, год {}", count, genreId, year);
+        return filmService.getPopularFilms(count, genreId, year);
     }
 }
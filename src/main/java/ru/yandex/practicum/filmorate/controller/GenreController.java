@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.dto.GenreDTO;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
@@ -19,14 +20,20 @@ public class GenreController {
     private final GenreService genreService;
 
     @GetMapping
-    public List<GenreDTO> getAllGenres() {
+    public List<GenreDTO> getAllGenres(WebRequest request) {
         log.info("Получен запрос на получение всех жанров");
+        if (request.checkNotModified(genreService.getETag())) {
+            return null;
+        }
         return genreService.getAllGenres();
     }
 
     @GetMapping("/{id}")
-    public GenreDTO getGenreById(@PathVariable int id) {
+    public GenreDTO getGenreById(@PathVariable int id, WebRequest request) {
         log.info("Получен запрос на получение жанра с id={}", id);
+        if (request.checkNotModified(genreService.getGenreETag(id))) {
+            return null;
+        }
         return genreService.getGenreById(id);
     }
 }
@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.dto.MpaDTO;
 import ru.yandex.practicum.filmorate.service.MpaService;
 
@@ -19,14 +20,20 @@ public class MpaController {
     private final MpaService mpaService;
 
     @GetMapping
-    public List<MpaDTO> getAllMpa() {
+    public List<MpaDTO> getAllMpa(WebRequest request) {
         log.info("Получен запрос на получение всех рейтингов");
+        if (request.checkNotModified(mpaService.getETag())) {
+            return null;
+        }
         return mpaService.getAllMpaRatings();
     }
 
     @GetMapping("/{id}")
-    public MpaDTO getMpaById(@PathVariable int id) {
+    public MpaDTO getMpaById(@PathVariable int id, WebRequest request) {
         log.info("Получен запрос на получение рейтинга с id={}", id);
+        if (request.checkNotModified(mpaService.getMpaRatingETag(id))) {
+            return null;
+        }
         return mpaService.getMpaRatingById(id);
     }
 }
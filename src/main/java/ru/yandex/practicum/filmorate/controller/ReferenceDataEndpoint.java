@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+
+import java.util.Map;
+
+// Перечитывание справочников после изменения таблиц genres и mpa в обход приложения:
+// POST /actuator/referencedata. Эндпоинт служебный, поэтому живет в actuator, а не в публичном API
+@Slf4j
+@Component
+@Endpoint(id = "referencedata")
+@RequiredArgsConstructor
+public class ReferenceDataEndpoint {
+
+    private final ReferenceDataCache referenceDataCache;
+
+    @ReadOperation
+    public Map<String, Integer> summary() {
+        return Map.of("genres", referenceDataCache.getAllGenres().size(),
+                "mpa", referenceDataCache.getAllMpaRatings().size());
+    }
+
+    @WriteOperation
+    public Map<String, Integer> refresh() {
+        log.info("Получен запрос на перечитывание справочников");
+        referenceDataCache.refresh();
+        return summary();
+    }
+}
@@ -4,12 +4,20 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
 import ru.yandex.practicum.filmorate.dto.UserUpdateDTO;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
@@ -17,6 +25,10 @@ import java.util.Collection;
 @Slf4j
 public class UserController {
     private final UserService userService;
+    private final JsonArrayStreamer jsonArrayStreamer;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -31,15 +43,40 @@ public class UserController {
         return userService.update(newUser);
     }
 
+    // Без after и limit возвращается весь список, как до появления страниц. Курсор следующей страницы
+    // передается в заголовке X-Next-Cursor, чтобы тело ответа осталось массивом
     @GetMapping
-    public Collection<UserDTO> findAll() {
-        log.info("Получен запрос на получение всех пользователей");
-        return userService.findAll();
+    public ResponseEntity<List<UserDTO>> findAll(@RequestParam(required = false) final Long after,
+                                                @RequestParam(required = false) final Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Получен запрос на получение всех пользователей");
+            List<UserDTO> all = new ArrayList<>();
+            userService.streamAll(all::add);
+            return ResponseEntity.ok(all);
+        }
+        log.info("Получен запрос на получение пользователей: after={}, limit={}", after, limit);
+        PageDTO<UserDTO> page = userService.findAll(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        log.info("Получен запрос на потоковое получение всех пользователей");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArrayStreamer.<UserDTO>stream(userService::streamAll));
     }
 
     @GetMapping("/{id}")
-    public UserDTO getUserById(@Valid @PathVariable final Long id) {
+    public UserDTO getUserById(@Valid @PathVariable final Long id, WebRequest request) {
         log.info("Получен запрос на получение пользователя с id={}", id);
+        if (request.checkNotModified(userService.getUserETag(id))) {
+            return null;
+        }
         return userService.getUserById(id);
     }
 
@@ -63,6 +100,20 @@ public class UserController {
         return userService.getFriendsById(id);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public Collection<UserDTO> getFriendSuggestions(@Valid @PathVariable("id") Long id,
+                                                    @RequestParam(defaultValue = "10") final Integer limit) {
+        log.info("Получен запрос на получение {} рекомендаций друзей для пользователя с id={}", limit, id);
+        return userService.getFriendSuggestions(id, limit);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public Collection<FilmDTO> getRecommendations(@Valid @PathVariable("id") Long id,
+                                                  @RequestParam(defaultValue = "10") final Integer limit) {
+        log.info("Получен запрос на получение рекомендованных фильмов для пользователя с id={}", id);
+        return userService.getRecommendations(id, limit);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<UserDTO> getMutualFriends(@Valid @PathVariable("id") Long id,
                                                 @Valid @PathVariable("otherId") Long otherId) {
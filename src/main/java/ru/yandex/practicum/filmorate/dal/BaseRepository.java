@@ -1,25 +1,83 @@
 package ru.yandex.practicum.filmorate.dal;
 
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 public class BaseRepository {
 
-    protected static Long insert(JdbcTemplate jdbc, String query, Object... params) {
+    // Пакетная вставка, возвращает сгенерированные id в порядке строк
+    protected static List<Long> batchInsert(JdbcTemplate jdbc, String query, List<Object[]> rows) {
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbc.update(connection -> {
+        jdbc.batchUpdate(new InsertStatementCreator(query, new Object[0]), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Object[] params = rows.get(i);
+                for (int idx = 0; idx < params.length; idx++) {
+                    ps.setObject(idx + 1, params[idx]);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        }, keyHolder);
+
+        return keyHolder.getKeyList()
+                .stream()
+                .map(keys -> ((Number) keys.values().iterator().next()).longValue())
+                .toList();
+    }
+
+    // Курсор только вперед: строки читаются порциями по fetchSize, а не загружаются в память целиком
+    protected static PreparedStatementCreator streamingStatement(String query, int fetchSize) {
+        return new StreamingStatementCreator(query, fetchSize);
+    }
+
+    // Создатели запросов реализуют SqlProvider, чтобы в метриках было видно, какой запрос выполнялся
+    private record InsertStatementCreator(String query, Object[] params)
+            implements PreparedStatementCreator, SqlProvider {
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
             PreparedStatement ps = connection
                     .prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
             for (int idx = 0; idx < params.length; idx++) {
                 ps.setObject(idx + 1, params[idx]);
             }
             return ps;
-        }, keyHolder);
+        }
 
-        return keyHolder.getKeyAs(Long.class);
+        @Override
+        public String getSql() {
+            return query;
+        }
+    }
+
+    private record StreamingStatementCreator(String query, int fetchSize)
+            implements PreparedStatementCreator, SqlProvider {
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+            PreparedStatement ps = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }
 
+        @Override
+        public String getSql() {
+            return query;
+        }
     }
 }
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+// Пакетная запись для импорта: каждый метод выполняет один batchUpdate на весь переданный пакет строк
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class BulkRepository extends BaseRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String ADD_FILMS_QUERY = "INSERT INTO films(name, description, release_date, duration, mpa_id) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String ADD_FILM_GENRES_QUERY = "INSERT INTO films_genre(film_id, genre_id) VALUES (?, ?)";
+    private static final String ADD_USERS_QUERY = "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)";
+    // Повторный импорт тех же лайков и заявок в друзья ничего не меняет
+    private static final String MERGE_LIKES_QUERY = "MERGE INTO likes(film_id, user_id) KEY(film_id, user_id) " +
+            "VALUES (?, ?)";
+    private static final String MERGE_TIMED_LIKES_QUERY = "MERGE INTO likes(film_id, user_id, created_at) " +
+            "KEY(film_id, user_id) VALUES (?, ?, ?)";
+    private static final String MERGE_FRIENDS_QUERY = "MERGE INTO friends(user_id, friend_id, friendship_status) " +
+            "KEY(user_id, friend_id) VALUES (?, ?, false)";
+    // Дружба подтверждена, если есть встречная запись
+    private static final String UPDATE_FRIENDSHIP_STATUS_QUERY = "UPDATE friends AS f " +
+            "SET friendship_status = EXISTS (SELECT 1 FROM friends AS r " +
+            "WHERE r.user_id = f.friend_id AND r.friend_id = f.user_id) " +
+            "WHERE f.user_id = ? AND f.friend_id = ?";
+
+    public List<Long> addFilms(List<Film> films) {
+        log.debug("Пакетная вставка {} фильмов", films.size());
+        List<Object[]> rows = films.stream()
+                .map(film -> new Object[]{film.getName(), film.getDescription(),
+                        Date.valueOf(film.getReleaseDate()), film.getDuration(), film.getMpa().getId()})
+                .toList();
+        return batchInsert(jdbcTemplate, ADD_FILMS_QUERY, rows);
+    }
+
+    // Строки вида {film_id, genre_id}
+    public void addFilmGenres(List<Object[]> filmGenres) {
+        log.debug("Пакетная вставка {} жанров фильмов", filmGenres.size());
+        if (!filmGenres.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_FILM_GENRES_QUERY, filmGenres);
+        }
+    }
+
+    public void addUsers(List<User> users) {
+        log.debug("Пакетная вставка {} пользователей", users.size());
+        List<Object[]> rows = users.stream()
+                .map(user -> new Object[]{user.getEmail(), user.getLogin(), user.getName(),
+                        Date.valueOf(user.getBirthday())})
+                .toList();
+        jdbcTemplate.batchUpdate(ADD_USERS_QUERY, rows);
+    }
+
+    // Строки вида {film_id, user_id, created_at}. Отсортированные по ключу строки ложатся в соседние страницы индекса.
+    // Без created_at новый лайк получает текущее время, а у существующего время не меняется
+    public void mergeLikes(List<Object[]> likes) {
+        log.debug("Пакетная запись {} лайков", likes.size());
+        List<Object[]> timed = new ArrayList<>();
+        List<Object[]> untimed = new ArrayList<>();
+        for (Object[] like : likes) {
+            if (like[2] != null) {
+                timed.add(like);
+            } else {
+                untimed.add(new Object[]{like[0], like[1]});
+            }
+        }
+        if (!timed.isEmpty()) {
+            jdbcTemplate.batchUpdate(MERGE_TIMED_LIKES_QUERY, timed);
+        }
+        if (!untimed.isEmpty()) {
+            jdbcTemplate.batchUpdate(MERGE_LIKES_QUERY, untimed);
+        }
+    }
+
+    // Строки вида {user_id, friend_id} в формате таблицы friends: friend_id добавил в друзья user_id.
+    // Статус пересчитывается для записанной и встречной записи, чтобы взаимные заявки стали подтвержденной дружбой
+    public void mergeFriends(List<Object[]> friends) {
+        log.debug("Пакетная запись {} заявок в друзья", friends.size());
+        if (friends.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(MERGE_FRIENDS_QUERY, friends);
+
+        List<Object[]> statusRows = new ArrayList<>(friends.size() * 2);
+        for (Object[] friendship : friends) {
+            statusRows.add(friendship);
+            statusRows.add(new Object[]{friendship[1], friendship[0]});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_FRIENDSHIP_STATUS_QUERY, statusRows);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.ExportTable;
+
+import java.sql.ResultSet;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Выгрузка таблиц как есть, без сортировки и соединений: строки идут в порядке хранения через курсор только вперед
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ExportRepository extends BaseRepository {
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final String EXPORT_FILMS_QUERY = "SELECT film_id, name, description, release_date, duration, " +
+            "mpa_id FROM films";
+    private static final String EXPORT_FILMS_GENRE_QUERY = "SELECT film_id, genre_id FROM films_genre";
+    private static final String EXPORT_USERS_QUERY = "SELECT user_id, email, login, name, birthday FROM users";
+    private static final String EXPORT_FRIENDS_QUERY = "SELECT user_id, friend_id, friendship_status FROM friends";
+    private static final String EXPORT_LIKES_QUERY = "SELECT film_id, user_id, created_at FROM likes";
+
+    private static final Map<ExportTable, String> QUERIES = new EnumMap<>(Map.of(
+            ExportTable.FILMS, EXPORT_FILMS_QUERY,
+            ExportTable.FILMS_GENRE, EXPORT_FILMS_GENRE_QUERY,
+            ExportTable.USERS, EXPORT_USERS_QUERY,
+            ExportTable.FRIENDS, EXPORT_FRIENDS_QUERY,
+            ExportTable.LIKES, EXPORT_LIKES_QUERY));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Возвращает число выгруженных строк
+    public long forEachRow(ExportTable table, RowCallbackHandler handler) {
+        log.debug("Выгрузка таблицы {}", table);
+        Long rows = jdbcTemplate.query(streamingStatement(QUERIES.get(table), EXPORT_FETCH_SIZE), (ResultSet rs) -> {
+            long count = 0;
+            while (rs.next()) {
+                handler.processRow(rs);
+                count++;
+            }
+            return count;
+        });
+        return rows == null ? 0 : rows;
+    }
+}
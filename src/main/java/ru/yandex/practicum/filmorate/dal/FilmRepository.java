@@ -2,13 +2,30 @@ package ru.yandex.practicum.filmorate.dal;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmResultSetExtractor;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -17,35 +34,73 @@ import java.util.stream.Collectors;
 public class FilmRepository extends BaseRepository {
 
     private final JdbcTemplate jdbcTemplate;
-    private final RowMapper<Film> mapper;
+    private final FilmResultSetExtractor extractor;
+    private final FilmRowMapper filmRowMapper;
 
-    private static final String ADD_FILM_QUERY = "INSERT INTO films(name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
-    private static final String ADD_FILM_GENRES_QUERY = "MERGE INTO films_genre(film_id, genre_id) KEY(film_id, genre_id) VALUES (?, ?)";
-    private static final String UPDATE_FILM_QUERY = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? WHERE film_id = ?";
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // FINAL TABLE возвращает строку в том виде, в каком она сохранена, поэтому после записи фильм не перечитывается
+    private static final String ADD_FILM_QUERY = "SELECT * FROM FINAL TABLE (INSERT INTO films(name, description, " +
+            "release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?))";
+    private static final String GET_FILM_GENRE_IDS_QUERY = "SELECT genre_id FROM films_genre WHERE film_id = ?";
+    private static final String ADD_FILM_GENRES_QUERY = "INSERT INTO films_genre(film_id, genre_id) VALUES (?, ?)";
+    private static final String REMOVE_FILM_GENRES_QUERY = "DELETE FROM films_genre WHERE film_id = ? AND genre_id IN (%s)";
+    private static final String UPDATE_FILM_QUERY = "SELECT * FROM FINAL TABLE (UPDATE films SET name = ?, " +
+            "description = ?, release_date = ?, duration = ?, mpa_id = ? WHERE film_id = ?)";
     private static final String DELETE_FILM_QUERY = "DELETE FROM films WHERE film_id = ?";
-    private static final String GET_ALL_FILMS_QUERY = "SELECT f.FILM_ID , f.NAME , f.DESCRIPTION , f.RELEASE_DATE , " +
-            "f.DURATION , f.MPA_ID , m.NAME AS mpa_name, fg.GENRE_ID , g.NAME AS genre_name " +
-            "FROM FILMS f " +
-            "LEFT JOIN MPA m ON f.MPA_ID = m.MPA_ID " +
-            "LEFT JOIN FILMS_GENRE fg ON f.FILM_ID = fg.FILM_ID " +
-            "LEFT JOIN GENRES g ON fg.GENRE_ID = g.GENRE_ID ";
-    private static final String GET_FILM_BY_ID_QUERY = "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, m.mpa_id, m.name AS mpa_name " +
+    // Названия жанров и рейтингов подставляются из ReferenceDataCache, поэтому справочники не джойним
+    private static final String GET_FILMS_WITH_GENRES_QUERY = "SELECT f.film_id, f.name, f.description, f.release_date, " +
+            "f.duration, f.mpa_id, fg.genre_id " +
             "FROM films AS f " +
-            "INNER JOIN mpa AS m ON f.mpa_id = m.mpa_id " +
-            "WHERE f.film_id = ?";
-    private static final String ADD_LIKE_QUERY = "MERGE INTO likes(film_id, user_id) KEY(film_id, user_id) VALUES (?, ?)";
-    private static final String REMOVE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-    private static final String FIND_POPULAR_FILM_QUERY = "SELECT film_id " +
+            "LEFT JOIN films_genre AS fg ON f.film_id = fg.film_id ";
+    private static final String GET_ALL_FILMS_QUERY = GET_FILMS_WITH_GENRES_QUERY +
+            "ORDER BY f.film_id, fg.genre_id";
+    // Сначала ограничиваем выборку фильмов, а уже потом присоединяем жанры
+    private static final String GET_FILMS_PAGE_QUERY = "SELECT f.film_id, f.name, f.description, f.release_date, " +
+            "f.duration, f.mpa_id, fg.genre_id " +
+            "FROM (SELECT * FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?) AS f " +
+            "LEFT JOIN films_genre AS fg ON f.film_id = fg.film_id " +
+            "ORDER BY f.film_id, fg.genre_id";
+    private static final String GET_FILM_BY_ID_QUERY = GET_FILMS_WITH_GENRES_QUERY +
+            "WHERE f.film_id = ? " +
+            "ORDER BY fg.genre_id";
+    private static final String GET_FILMS_BY_IDS_QUERY = GET_FILMS_WITH_GENRES_QUERY +
+            "WHERE f.film_id IN (%s) " +
+            "ORDER BY f.film_id, fg.genre_id";
+    // Лайк добавляется только если его еще нет, чтобы по числу вставленных строк понимать, изменился ли счетчик
+    private static final String ADD_LIKE_QUERY = "INSERT INTO likes(film_id, user_id, created_at) " +
+            "SELECT ?, ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    // Удаление возвращает время удаленного лайка, чтобы вычесть его вклад из рейтинга трендов
+    private static final String REMOVE_LIKE_QUERY = "SELECT created_at " +
+            "FROM OLD TABLE (DELETE FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String GET_LIKE_TIME_QUERY = "SELECT created_at FROM likes WHERE film_id = ? AND user_id = ?";
+    // Запись буфера лайков повторяема: при повторе после сбоя MERGE и DELETE дают тот же результат
+    private static final String MERGE_LIKE_QUERY = "MERGE INTO likes(film_id, user_id, created_at) " +
+            "KEY(film_id, user_id) VALUES (?, ?, ?)";
+    private static final String DELETE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String GET_ALL_FILM_IDS_QUERY = "SELECT film_id FROM films";
+    private static final String GET_ALL_LIKES_QUERY = "SELECT film_id, user_id FROM likes";
+    private static final String GET_LIKE_TIMES_SINCE_QUERY = "SELECT film_id, created_at FROM likes " +
+            "WHERE created_at > ?";
+    private static final String GET_RELEASE_YEAR_QUERY = "SELECT EXTRACT(YEAR FROM release_date) FROM films " +
+            "WHERE film_id = ?";
+    private static final String GET_LIKED_FILM_RELEASE_YEARS_QUERY = "SELECT film_id, " +
+            "EXTRACT(YEAR FROM release_date) AS release_year " +
+            "FROM films " +
+            "WHERE film_id IN (SELECT film_id FROM likes)";
+    private static final String GET_LIKED_FILM_GENRES_QUERY = "SELECT film_id, genre_id FROM films_genre " +
+            "WHERE film_id IN (SELECT film_id FROM likes)";
+    private static final String GET_LIKE_COUNTS_QUERY = "SELECT film_id, COUNT(user_id) AS likes " +
             "FROM likes " +
-            "GROUP BY film_id " +
-            "ORDER BY COUNT(user_id) DESC " +
-            "LIMIT ?";
-
-    public Long create(Film film) {
-        log.info("Получен запрос на добавление фильма {}", film);
-        return BaseRepository.insert(
-                jdbcTemplate,
+            "GROUP BY film_id";
+
+    // Жанры в возвращаемый фильм не входят, их сохраняет syncGenres
+    public Film create(Film film) {
+        log.debug("Получен запрос на добавление фильма {}", film);
+        return jdbcTemplate.queryForObject(
                 ADD_FILM_QUERY,
+                filmRowMapper,
                 film.getName(),
                 film.getDescription(),
                 Date.valueOf(film.getReleaseDate()),
@@ -54,59 +109,188 @@ public class FilmRepository extends BaseRepository {
         );
     }
 
-    public int addGenreToFilm(long filmId, int genreId) {
-        log.info("Получен запрос на добавление жанра с id={}", filmId);
-        return jdbcTemplate.update(ADD_FILM_GENRES_QUERY, filmId, genreId);
+    public Set<Integer> getGenreIds(long filmId) {
+        log.debug("Получен запрос на получение id жанров фильма с id={}", filmId);
+        return new HashSet<>(jdbcTemplate.queryForList(GET_FILM_GENRE_IDS_QUERY, Integer.class, filmId));
     }
 
-    public int update(Film film) {
-        log.info("Получен запрос на обновление фильма {}", film);
-        return jdbcTemplate.update(
-                UPDATE_FILM_QUERY,
-                film.getName(),
-                film.getDescription(),
-                Date.valueOf(film.getReleaseDate()),
-                film.getDuration(),
-                film.getMpa().getId(),
-                film.getId()
-        );
+    // Приводит жанры фильма к genreIds, записывая в БД только разницу с уже сохраненными storedGenreIds
+    public void syncGenres(long filmId, Set<Integer> storedGenreIds, Set<Integer> genreIds) {
+        log.debug("Получен запрос на обновление жанров фильма с id={}: {} -> {}", filmId, storedGenreIds, genreIds);
+        List<Integer> removedGenreIds = storedGenreIds.stream()
+                .filter(genreId -> !genreIds.contains(genreId))
+                .toList();
+        List<Object[]> addedGenres = genreIds.stream()
+                .filter(genreId -> !storedGenreIds.contains(genreId))
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList();
+
+        if (!removedGenreIds.isEmpty()) {
+            String placeholders = String.join(", ", Collections.nCopies(removedGenreIds.size(), "?"));
+            List<Object> params = new ArrayList<>(removedGenreIds.size() + 1);
+            params.add(filmId);
+            params.addAll(removedGenreIds);
+            jdbcTemplate.update(REMOVE_FILM_GENRES_QUERY.formatted(placeholders), params.toArray());
+        }
+        if (!addedGenres.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_FILM_GENRES_QUERY, addedGenres);
+        }
+    }
+
+    // Пустой Optional, если фильма нет. Жанры в возвращаемый фильм не входят
+    public Optional<Film> update(Film film) {
+        log.debug("Получен запрос на обновление фильма {}", film);
+        return jdbcTemplate.query(
+                        UPDATE_FILM_QUERY,
+                        filmRowMapper,
+                        film.getName(),
+                        film.getDescription(),
+                        Date.valueOf(film.getReleaseDate()),
+                        film.getDuration(),
+                        film.getMpa().getId(),
+                        film.getId()
+                )
+                .stream()
+                .findFirst();
     }
 
     public void remove(Long id) {
-        log.info("Получен запрос на удаление фильма c id={}", id);
+        log.debug("Получен запрос на удаление фильма c id={}", id);
         jdbcTemplate.update(
                 DELETE_FILM_QUERY,
                 id
         );
-        log.info("Из базы данных удален фильм с id={}", id);
+        log.debug("Из базы данных удален фильм с id={}", id);
+    }
+
+    public List<Film> findPage(long afterId, int limit) {
+        log.debug("Получен запрос на получение {} фильмов с id больше {}", limit, afterId);
+        return jdbcTemplate.query(GET_FILMS_PAGE_QUERY, extractor, afterId, limit);
+    }
+
+    // Фильмы отдаются потребителю по мере чтения курсора, весь каталог в памяти не собирается
+    public void streamAll(Consumer<Film> consumer) {
+        log.debug("Получен запрос на потоковое чтение всех фильмов");
+        jdbcTemplate.query(streamingStatement(GET_ALL_FILMS_QUERY, STREAM_FETCH_SIZE),
+                (ResultSet rs) -> extractor.forEachFilm(rs, consumer));
+    }
+
+    public Optional<Film> getFilmById(long filmId) {
+        log.debug("Получен запрос на получение фильма по id={}", filmId);
+        return jdbcTemplate.query(GET_FILM_BY_ID_QUERY, extractor, filmId)
+                .stream()
+                .findFirst();
+    }
+
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        log.debug("Получен запрос на получение {} фильмов по списку id", filmIds.size());
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(filmIds.size(), "?"));
+        Map<Long, Film> filmsById = jdbcTemplate.query(GET_FILMS_BY_IDS_QUERY.formatted(placeholders),
+                        extractor, filmIds.toArray())
+                .stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+
+        // Возвращаем фильмы в том же порядке, в котором были переданы id
+        return filmIds.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Возвращает 0, если лайк уже был
+    public int addLike(long filmId, long userId, Instant likedAt) {
+        log.debug("Дабавление лайка фильму с id={} от пользователя c id={}", filmId, userId);
+        try {
+            return jdbcTemplate.update(ADD_LIKE_QUERY, filmId, userId, Timestamp.from(likedAt), filmId, userId);
+        } catch (DuplicateKeyException exception) {
+            // Два одновременных одинаковых лайка оба проходят NOT EXISTS, и второй упирается в uq_likes
+            return 0;
+        }
+    }
+
+    // Возвращает время удаленного лайка или пустой Optional, если лайка не было
+    public Optional<Instant> removeLike(long filmId, long userId) {
+        log.debug("Отправка запроса на удаление лайка фильму с id={} от пользователя c id={}", filmId, userId);
+        return jdbcTemplate.query(REMOVE_LIKE_QUERY, (rs, rowNum) -> rs.getTimestamp("created_at").toInstant(),
+                        filmId, userId)
+                .stream()
+                .findFirst();
+    }
+
+    public Optional<Instant> getLikeTime(long filmId, long userId) {
+        log.debug("Получен запрос на получение времени лайка фильму с id={} от пользователя c id={}", filmId, userId);
+        return jdbcTemplate.query(GET_LIKE_TIME_QUERY, (rs, rowNum) -> rs.getTimestamp("created_at").toInstant(),
+                        filmId, userId)
+                .stream()
+                .findFirst();
+    }
+
+    // Строки вида {film_id, user_id, created_at} для поставленных лайков и {film_id, user_id} для удаленных
+    public void writeLikes(List<Object[]> addedLikes, List<Object[]> removedLikes, int batchSize) {
+        log.debug("Пакетная запись лайков: поставлено {}, удалено {}", addedLikes.size(), removedLikes.size());
+        for (int from = 0; from < addedLikes.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(MERGE_LIKE_QUERY,
+                    addedLikes.subList(from, Math.min(from + batchSize, addedLikes.size())));
+        }
+        for (int from = 0; from < removedLikes.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(DELETE_LIKE_QUERY,
+                    removedLikes.subList(from, Math.min(from + batchSize, removedLikes.size())));
+        }
+    }
+
+    public Optional<Integer> getReleaseYear(long filmId) {
+        log.debug("Получен запрос на получение года выпуска фильма с id={}", filmId);
+        return jdbcTemplate.queryForList(GET_RELEASE_YEAR_QUERY, Integer.class, filmId)
+                .stream()
+                .findFirst();
+    }
+
+    public void forEachLikedFilmReleaseYear(BiConsumer<Long, Integer> consumer) {
+        log.debug("Отправка запроса на чтение года выпуска фильмов с лайками");
+        jdbcTemplate.query(GET_LIKED_FILM_RELEASE_YEARS_QUERY, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getInt("release_year"));
+        });
     }
 
-    public List<Film> findAll() {
-        log.info("Получен запрос на получение всех фильмов");
-        return jdbcTemplate.query(GET_ALL_FILMS_QUERY, mapper);
+    public void forEachLikedFilmGenre(BiConsumer<Long, Integer> consumer) {
+        log.debug("Отправка запроса на чтение жанров фильмов с лайками");
+        jdbcTemplate.query(GET_LIKED_FILM_GENRES_QUERY, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getInt("genre_id"));
+        });
     }
 
-    public Film getFilmById(long filmId) {
-        log.info("Получен запрос на получение фильма по id={}", filmId);
-        return jdbcTemplate.queryForObject(GET_FILM_BY_ID_QUERY, mapper, filmId);
+    public Map<Long, Integer> getLikeCounts() {
+        log.debug("Отправка запроса на получение количества лайков всех фильмов");
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        jdbcTemplate.query(GET_LIKE_COUNTS_QUERY,
+                rs -> {
+                    likeCounts.put(rs.getLong("film_id"), rs.getInt("likes"));
+                });
+        return likeCounts;
     }
 
-    public Film addLike(long filmId, long userId) {
-        log.info("Дабавление лайка фильму с id={} от пользователя c id={}", filmId, userId);
-        jdbcTemplate.update(ADD_LIKE_QUERY, filmId, userId);
-        return getFilmById(filmId);
+    public void forEachLikeSince(Instant since, BiConsumer<Long, Instant> consumer) {
+        log.debug("Отправка запроса на чтение лайков, поставленных после {}", since);
+        jdbcTemplate.query(GET_LIKE_TIMES_SINCE_QUERY, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getTimestamp("created_at").toInstant());
+        }, Timestamp.from(since));
     }
 
-    public int removeLike(long filmId, long userId) {
-        log.info("Отправка запроса на удаление лайка фильму с id={} от пользователя c id={}");
-        return jdbcTemplate.update(REMOVE_LIKE_QUERY, filmId, userId);
+    public void forEachLike(BiConsumer<Long, Long> consumer) {
+        log.debug("Отправка запроса на чтение всех лайков");
+        jdbcTemplate.query(GET_ALL_LIKES_QUERY, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getLong("user_id"));
+        });
     }
 
-    public List<Film> findPopularFilms(int count) {
-        log.info("Отправка запроса на получение списка самых популярных фильмов");
-        List<Integer> popularFilmsIds = jdbcTemplate.queryForList(FIND_POPULAR_FILM_QUERY, Integer.class, count);
-        return popularFilmsIds.stream()
-                .map(id -> getFilmById(id))
-                .collect(Collectors.toList());
+    public void forEachFilmId(LongConsumer consumer) {
+        log.debug("Отправка запроса на чтение id всех фильмов");
+        jdbcTemplate.query(GET_ALL_FILM_IDS_QUERY, rs -> {
+            consumer.accept(rs.getLong("film_id"));
+        });
     }
 }
@@ -10,8 +10,13 @@ import ru.yandex.practicum.filmorate.dto.UserUpdateDTO;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
@@ -21,38 +26,60 @@ public class UserRepository extends BaseRepository {
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<User> mapper;
 
-    private static final String ADD_USER_QUERY = "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)";
-    private static final String UPDATE_USER_QUERY = "UPDATE users " +
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // FINAL TABLE возвращает сохраненную строку, поэтому после записи пользователь не перечитывается
+    private static final String ADD_USER_QUERY = "SELECT * FROM FINAL TABLE (" +
+            "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?))";
+    private static final String UPDATE_USER_QUERY = "SELECT * FROM FINAL TABLE (UPDATE users " +
             "SET email = ?, login = ?, name = ?, birthday = ? " +
-            "WHERE user_id = ?";
+            "WHERE user_id = ?)";
     private static final String FIND_USER_BY_ID_QUERY = "SELECT * " +
             "FROM users " +
             "WHERE user_id = ?";
-    private static final String FIND_ALL_USERS_QUERY = "SELECT * FROM users";
-    private static final String CHECK_USER_AVAILABILITY_QUERY = "SELECT COUNT(user_id) " +
-            "FROM friends " +
-            "WHERE user_id = ? AND friend_id = ?";
-    private static final String UPDATE_FRIENDSHIP_CONFIRMATION_QUERY = "UPDATE friends " +
-            "SET friendship_status = true " +
-            "WHERE user_id = ? AND friend_id = ?";
-    private static final String ADD_FRIEND_QUERY = "MERGE INTO friends(user_id, " +
-            "friend_id, friendship_status) KEY(user_id, friend_id) VALUES (?, ?, false)";
-    private static final String REMOVE_FRIEND_QUERY = "DELETE FROM friends " +
-            "WHERE user_id = ? AND friend_id = ?";
-    private static final String GET_FRIENDS_BY_ID_QUERY = "SELECT user_id " +
-            "FROM friends " +
-            "WHERE friend_id = ? " +
-            "UNION " +
-            "SELECT friend_id AS user_id " +
-            "FROM friends " +
-            "WHERE user_id = ? AND friendship_status = true";
-
-
-    public Long create(User user) {
-        log.info("Получен запрос на добавление пользователя {}", user);
-        return BaseRepository.insert(
-                jdbcTemplate,
+    private static final String FIND_ALL_USERS_QUERY = "SELECT * FROM users ORDER BY user_id";
+    private static final String FIND_USERS_PAGE_QUERY = "SELECT * " +
+            "FROM users " +
+            "WHERE user_id > ? " +
+            "ORDER BY user_id " +
+            "LIMIT ?";
+    private static final String GET_ALL_USER_IDS_QUERY = "SELECT user_id FROM users";
+    // Блокирует строки обоих пользователей в порядке id: встречные заявки одной пары выполняются по очереди
+    private static final String LOCK_USERS_QUERY = "SELECT * " +
+            "FROM users " +
+            "WHERE user_id IN (?, ?) " +
+            "ORDER BY user_id " +
+            "FOR UPDATE";
+    // Первая строка источника - сама заявка, вторая - встречная заявка, если она есть. Заявка сохраняется
+    // подтвержденной, если встречная уже есть, а встречная в этом случае подтверждается тем же запросом
+    private static final String ADD_FRIEND_QUERY = "MERGE INTO friends AS f " +
+            "USING (SELECT r.user_id, r.friend_id, r.request, " +
+            "EXISTS (SELECT 1 FROM friends WHERE user_id = ? AND friend_id = ?) AS confirmed " +
+            "FROM (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), TRUE), (?, ?, FALSE)) " +
+            "AS r(user_id, friend_id, request)) AS s " +
+            "ON f.user_id = s.user_id AND f.friend_id = s.friend_id " +
+            "WHEN MATCHED THEN UPDATE SET friendship_status = s.confirmed " +
+            "WHEN NOT MATCHED AND s.request THEN INSERT (user_id, friend_id, friendship_status) " +
+            "VALUES (s.user_id, s.friend_id, s.confirmed)";
+    // Заявка удаляется, а встречная заявка, если она есть, снова становится неподтвержденной
+    private static final String REMOVE_FRIEND_QUERY = "MERGE INTO friends AS f " +
+            "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), TRUE), (?, ?, FALSE)) " +
+            "AS s(user_id, friend_id, request) " +
+            "ON f.user_id = s.user_id AND f.friend_id = s.friend_id " +
+            "WHEN MATCHED AND s.request THEN DELETE " +
+            "WHEN MATCHED THEN UPDATE SET friendship_status = FALSE";
+    private static final String GET_USERS_BY_IDS_QUERY = "SELECT * " +
+            "FROM users " +
+            "WHERE user_id IN (%s) " +
+            "ORDER BY user_id";
+    private static final String GET_ALL_FRIENDSHIPS_QUERY = "SELECT user_id, friend_id FROM friends";
+
+
+    public User create(User user) {
+        log.debug("Получен запрос на добавление пользователя {}", user);
+        return jdbcTemplate.queryForObject(
                 ADD_USER_QUERY,
+                mapper,
                 user.getEmail(),
                 user.getLogin(),
                 user.getName(),
@@ -60,20 +87,24 @@ public class UserRepository extends BaseRepository {
         );
     }
 
-    public int update(UserUpdateDTO newUser) {
-        log.info("Получен запрос на обновление пользователя {}", newUser);
-        return jdbcTemplate.update(
-                UPDATE_USER_QUERY,
-                newUser.getEmail(),
-                newUser.getLogin(),
-                newUser.getName(),
-                Date.valueOf(newUser.getBirthday()),
-                newUser.getId()
-        );
+    // Пустой Optional, если пользователя нет
+    public Optional<User> update(UserUpdateDTO newUser) {
+        log.debug("Получен запрос на обновление пользователя {}", newUser);
+        return jdbcTemplate.query(
+                        UPDATE_USER_QUERY,
+                        mapper,
+                        newUser.getEmail(),
+                        newUser.getLogin(),
+                        newUser.getName(),
+                        Date.valueOf(newUser.getBirthday()),
+                        newUser.getId()
+                )
+                .stream()
+                .findFirst();
     }
 
     public Optional<User> getUserById(long userId) {
-        log.info("Получен запрос на получение пользователя по id={}", userId);
+        log.debug("Получен запрос на получение пользователя по id={}", userId);
         try {
             User user = jdbcTemplate.queryForObject(FIND_USER_BY_ID_QUERY, mapper, userId);
             return Optional.ofNullable(user);
@@ -82,39 +113,55 @@ public class UserRepository extends BaseRepository {
         }
     }
 
-    public List<User> findAll() {
-        log.info("Получен запрос на получение всех пользователей");
-        return jdbcTemplate.query(FIND_ALL_USERS_QUERY, mapper);
+    public List<User> findPage(long afterId, int limit) {
+        log.debug("Получен запрос на получение {} пользователей с id больше {}", limit, afterId);
+        return jdbcTemplate.query(FIND_USERS_PAGE_QUERY, mapper, afterId, limit);
+    }
+
+    // Поток держит открытым соединение с БД, поэтому его обязательно нужно закрыть
+    public Stream<User> streamAll() {
+        log.debug("Получен запрос на потоковое чтение всех пользователей");
+        return jdbcTemplate.queryForStream(streamingStatement(FIND_ALL_USERS_QUERY, STREAM_FETCH_SIZE), mapper);
     }
 
-    public User addFriend(long userId, long friendId) {
-        log.info("Получен запрос на добавление в друзья пользователя с id={} пользователю с id={}", friendId, userId);
-        jdbcTemplate.update(ADD_FRIEND_QUERY, friendId, userId);
-        return getUserById(userId).get();
+    // Вызывается в транзакции перед изменением дружбы. Возвращает найденных пользователей по возрастанию id
+    public List<User> lockUsers(long firstUserId, long secondUserId) {
+        log.debug("Блокировка пользователей с id={} и id={}", firstUserId, secondUserId);
+        return jdbcTemplate.query(LOCK_USERS_QUERY, mapper, firstUserId, secondUserId);
     }
 
-    public int getNumberOfFriendshipQueries(long firstUserId, long secondUserId) {
-        return jdbcTemplate.queryForObject(CHECK_USER_AVAILABILITY_QUERY,
-                Integer.class, firstUserId, secondUserId);
+    // Запись (user_id, friend_id) в таблице friends означает, что friend_id добавил в друзья user_id
+    public void addFriend(long userId, long friendId) {
+        log.debug("Получен запрос на добавление в друзья пользователя с id={} пользователю с id={}", friendId, userId);
+        jdbcTemplate.update(ADD_FRIEND_QUERY, userId, friendId, friendId, userId, userId, friendId);
     }
 
-    public int updateFriendship(long firstUserId, long secondUserId) {
-        return jdbcTemplate.queryForObject(UPDATE_FRIENDSHIP_CONFIRMATION_QUERY,
-                Integer.class, firstUserId, secondUserId);
+    public void removeFriend(long userId, long friendId) {
+        log.debug("Получен запрос на удаление друга с id={} из друзей пользователя с id={}", friendId, userId);
+        jdbcTemplate.update(REMOVE_FRIEND_QUERY, friendId, userId, userId, friendId);
     }
 
+    public List<User> getUsersByIds(long[] userIds) {
+        log.debug("Получен запрос на получение {} пользователей по списку id", userIds.length);
+        if (userIds.length == 0) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(userIds.length, "?"));
+        return jdbcTemplate.query(GET_USERS_BY_IDS_QUERY.formatted(placeholders), mapper,
+                Arrays.stream(userIds).boxed().toArray());
+    }
 
-    public User removeFriend(long userId, long friendId) {
-        log.info("Получен запрос на удаление друга с id={} из друзей пользователя с id={}", friendId, userId);
-        jdbcTemplate.update(REMOVE_FRIEND_QUERY, friendId, userId);
-        return getUserById(userId).get();
+    public void forEachFriendship(BiConsumer<Long, Long> consumer) {
+        log.debug("Получен запрос на чтение всех записей о дружбе");
+        jdbcTemplate.query(GET_ALL_FRIENDSHIPS_QUERY, rs -> {
+            consumer.accept(rs.getLong("user_id"), rs.getLong("friend_id"));
+        });
     }
 
-    public List<User> getFriendsById(long userId) {
-        log.info("Получен запрос друзей пользователя с id={}", userId);
-        List<Integer> friends = jdbcTemplate.queryForList(GET_FRIENDS_BY_ID_QUERY, Integer.class, userId, userId);
-        return friends.stream()
-                .map(id -> getUserById(id).get())
-                .toList();
+    public void forEachUserId(LongConsumer consumer) {
+        log.debug("Получен запрос на чтение id всех пользователей");
+        jdbcTemplate.query(GET_ALL_USER_IDS_QUERY, rs -> {
+            consumer.accept(rs.getLong("user_id"));
+        });
     }
 }
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.dal.mapper;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+public class FilmResultSetExtractor implements ResultSetExtractor<List<Film>> {
+
+    private final FilmRowMapper filmRowMapper;
+    private final ReferenceDataCache referenceDataCache;
+
+    @Override
+    public List<Film> extractData(ResultSet rs) throws SQLException {
+        List<Film> films = new ArrayList<>();
+        forEachFilm(rs, films::add);
+        return films;
+    }
+
+    // Фильм с k жанрами приходит k строками подряд (запросы сортируют по film_id):
+    // собираем их в один объект и отдаем его, как только id в выборке сменился. Возвращает число фильмов
+    public int forEachFilm(ResultSet rs, Consumer<Film> consumer) throws SQLException {
+        Film film = null;
+        int films = 0;
+        int rowNum = 0;
+        while (rs.next()) {
+            long filmId = rs.getLong("film_id");
+            if (film == null || film.getId() != filmId) {
+                if (film != null) {
+                    consumer.accept(film);
+                    films++;
+                }
+                film = filmRowMapper.mapRow(rs, rowNum);
+            }
+
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                film.getGenres().add(referenceDataCache.getGenreById(genreId)
+                        .orElseGet(() -> Genre.builder().id(genreId).build()));
+            }
+            rowNum++;
+        }
+        if (film != null) {
+            consumer.accept(film);
+            films++;
+        }
+        return films;
+    }
+}
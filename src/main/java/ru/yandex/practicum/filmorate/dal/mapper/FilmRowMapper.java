@@ -1,36 +1,35 @@
 package ru.yandex.practicum.filmorate.dal.mapper;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.dal.GenreRepository;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 
-@Slf4j
 @Component
 @RequiredArgsConstructor
 public class FilmRowMapper implements RowMapper<Film> {
 
-    private final GenreRepository genreRepository;
+    private final ReferenceDataCache referenceDataCache;
 
+    // Жанры в строку не входят, их добавляет FilmResultSetExtractor
     @Override
     public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+        int mpaId = rs.getInt("mpa_id");
         return Film.builder()
                 .id(rs.getLong("film_id"))
                 .name(rs.getString("name"))
                 .description(rs.getString("description"))
                 .releaseDate(rs.getDate("release_date").toLocalDate())
                 .duration(rs.getInt("duration"))
-                .mpa(Mpa.builder()
-                        .id(rs.getInt("mpa_id"))
-                        .name(rs.getString("mpa_name"))
-                        .build())
-                .genres(genreRepository.getFilmGenres(rs.getLong("film_id")))
+                .mpa(referenceDataCache.getMpaRatingById(mpaId)
+                        .orElseGet(() -> Mpa.builder().id(mpaId).build()))
+                .genres(new ArrayList<>())
                 .build();
     }
 }
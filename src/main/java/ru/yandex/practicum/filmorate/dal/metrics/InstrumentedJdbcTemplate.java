@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.monitoring.RepositoryQueryEvent;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// JdbcTemplate, который замеряет время и число строк каждого запроса репозиториев.
+// Переопределены методы, в которых сходятся остальные перегрузки query, update и batchUpdate:
+// дальше они вызывают закрытый execute, поэтому каждый запрос замеряется ровно один раз
+@Primary
+@Component
+public class InstrumentedJdbcTemplate extends JdbcTemplate {
+
+    // Строки, обработанные RowCallbackHandler в текущем запросе: такие запросы ничего не возвращают
+    private static final ThreadLocal<long[]> CALLBACK_ROWS = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final QueryNames queryNames;
+    private final Map<String, QueryMeters> metersByName = new ConcurrentHashMap<>();
+
+    public InstrumentedJdbcTemplate(DataSource dataSource, MeterRegistry meterRegistry, QueryNames queryNames) {
+        super(dataSource);
+        this.meterRegistry = meterRegistry;
+        this.queryNames = queryNames;
+    }
+
+    @Override
+    public <T> T execute(StatementCallback<T> action) {
+        return record(sqlOf(action), () -> super.execute(action));
+    }
+
+    @Override
+    public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) {
+        return record(sqlOf(psc), () -> super.execute(psc, action));
+    }
+
+    // Через этот метод выполняются пакетные batchUpdate
+    @Override
+    public <T> T execute(String sql, PreparedStatementCallback<T> action) {
+        return record(sql, () -> super.execute(sql, action));
+    }
+
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) {
+        return record(sql, () -> super.query(sql, rse));
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse) {
+        return record(sqlOf(psc), () -> super.query(psc, pss, rse));
+    }
+
+    @Override
+    public int update(String sql) {
+        return record(sql, () -> super.update(sql));
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) {
+        return record(sqlOf(psc), () -> super.update(psc, pss));
+    }
+
+    @Override
+    public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) {
+        return record(sqlOf(psc), () -> super.update(psc, generatedKeyHolder));
+    }
+
+    // Время потокового запроса включает обработку строк потребителем и заканчивается при закрытии потока
+    @Override
+    public <T> Stream<T> queryForStream(PreparedStatementCreator psc, PreparedStatementSetter pss,
+                                        RowMapper<T> rowMapper) {
+        QueryMeters meters = metersFor(sqlOf(psc));
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+        long started = System.nanoTime();
+        Stream<T> stream;
+        try {
+            stream = super.queryForStream(psc, pss, rowMapper);
+        } catch (RuntimeException e) {
+            meters.recordFailure(System.nanoTime() - started, event);
+            throw e;
+        }
+        long[] rows = new long[1];
+        return stream.peek(row -> rows[0]++)
+                .onClose(() -> meters.recordSuccess(System.nanoTime() - started, rows[0], event));
+    }
+
+    @Override
+    public void query(String sql, RowCallbackHandler rch) {
+        super.query(sql, counting(rch));
+    }
+
+    @Override
+    public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+        super.query(psc, counting(rch));
+    }
+
+    @Override
+    public void query(String sql, PreparedStatementSetter pss, RowCallbackHandler rch) {
+        super.query(sql, pss, counting(rch));
+    }
+
+    private <T> T record(String sql, Supplier<T> call) {
+        QueryMeters meters = metersFor(sql);
+        long[] outerRows = CALLBACK_ROWS.get();
+        long[] callbackRows = new long[1];
+        CALLBACK_ROWS.set(callbackRows);
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+        long started = System.nanoTime();
+        try {
+            T result = call.get();
+            long rows = callbackRows[0] > 0 ? callbackRows[0] : rowsOf(result);
+            meters.recordSuccess(System.nanoTime() - started, rows, event);
+            return result;
+        } catch (RuntimeException e) {
+            meters.recordFailure(System.nanoTime() - started, event);
+            throw e;
+        } finally {
+            if (outerRows == null) {
+                CALLBACK_ROWS.remove();
+            } else {
+                CALLBACK_ROWS.set(outerRows);
+            }
+        }
+    }
+
+    private static RowCallbackHandler counting(RowCallbackHandler rch) {
+        return rs -> {
+            rch.processRow(rs);
+            long[] rows = CALLBACK_ROWS.get();
+            if (rows != null) {
+                rows[0]++;
+            }
+        };
+    }
+
+    // Выборки возвращают коллекции, изменения - число затронутых строк, пакеты - массив таких чисел
+    private static long rowsOf(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (result instanceof Number number) {
+            return number.longValue();
+        }
+        if (result instanceof int[] counts) {
+            long rows = 0;
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+            return rows;
+        }
+        return 1;
+    }
+
+    private static String sqlOf(Object statement) {
+        return statement instanceof SqlProvider provider ? provider.getSql() : null;
+    }
+
+    private QueryMeters metersFor(String sql) {
+        return metersByName.computeIfAbsent(queryNames.resolve(sql), this::createMeters);
+    }
+
+    private QueryMeters createMeters(String name) {
+        return new QueryMeters(name, timer(name, "success"), timer(name, "error"),
+                DistributionSummary.builder("db.query.rows")
+                        .description("Число строк, возвращенных или измененных SQL-запросом")
+                        .baseUnit("rows")
+                        .tag("query", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+    }
+
+    private Timer timer(String name, String outcome) {
+        return Timer.builder("db.query")
+                .description("Время выполнения SQL-запроса")
+                .tag("query", name)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Кроме метрик, каждый запрос пишется в JFR как RepositoryQueryEvent, если запись событий включена
+    private record QueryMeters(String name, Timer success, Timer failure, DistributionSummary rows) {
+
+        void recordSuccess(long nanos, long rowCount, RepositoryQueryEvent event) {
+            success.record(nanos, TimeUnit.NANOSECONDS);
+            rows.record(rowCount);
+            commit(event, rowCount, true);
+        }
+
+        void recordFailure(long nanos, RepositoryQueryEvent event) {
+            failure.record(nanos, TimeUnit.NANOSECONDS);
+            commit(event, 0, false);
+        }
+
+        private void commit(RepositoryQueryEvent event, long rowCount, boolean succeeded) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.query = name;
+                event.rows = rowCount;
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+}
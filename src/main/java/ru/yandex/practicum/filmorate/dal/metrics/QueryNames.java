@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.dal.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.BulkRepository;
+import ru.yandex.practicum.filmorate.dal.ExportRepository;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepository;
+import ru.yandex.practicum.filmorate.dal.MpaRepository;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Имена запросов для метрик берутся из констант *_QUERY репозиториев, например FilmRepository.GET_FILM_BY_ID_QUERY
+@Slf4j
+@Component
+public class QueryNames {
+
+    public static final String UNKNOWN = "other";
+
+    private static final List<Class<?>> REPOSITORIES = List.of(FilmRepository.class, UserRepository.class,
+            GenreRepository.class, MpaRepository.class, BulkRepository.class, ExportRepository.class);
+    private static final String TEMPLATE_PLACEHOLDER = "%s";
+
+    private final Map<String, String> namesBySql = new HashMap<>();
+    // Шаблоны со списком параметров IN (%s) сравниваются по части до подстановки, самые длинные проверяются первыми
+    private final List<Template> templates = new ArrayList<>();
+
+    public QueryNames() {
+        for (Class<?> repository : REPOSITORIES) {
+            for (Field field : repository.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class
+                        || !field.getName().endsWith("_QUERY")) {
+                    continue;
+                }
+                String name = repository.getSimpleName() + "." + field.getName();
+                String sql = readConstant(field);
+                int placeholder = sql.indexOf(TEMPLATE_PLACEHOLDER);
+                if (placeholder >= 0) {
+                    templates.add(new Template(sql.substring(0, placeholder), name));
+                } else {
+                    // Одинаковый текст в разных репозиториях считается под именем из репозитория, указанного раньше
+                    namesBySql.putIfAbsent(sql, name);
+                }
+            }
+        }
+        templates.sort(Comparator.comparingInt((Template template) -> template.prefix().length()).reversed());
+        log.info("Зарегистрировано запросов для метрик: {}, шаблонов: {}", namesBySql.size(), templates.size());
+    }
+
+    public String resolve(String sql) {
+        if (sql == null) {
+            return UNKNOWN;
+        }
+        String name = namesBySql.get(sql);
+        if (name != null) {
+            return name;
+        }
+        for (Template template : templates) {
+            if (sql.startsWith(template.prefix())) {
+                return template.name();
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static String readConstant(Field field) {
+        try {
+            field.setAccessible(true);
+            return (String) field.get(null);
+        } catch (IllegalAccessException e) {
+            throw new InternalServerException("Не удалось прочитать текст запроса " + field.getName());
+        }
+    }
+
+    private record Template(String prefix, String name) {
+    }
+}
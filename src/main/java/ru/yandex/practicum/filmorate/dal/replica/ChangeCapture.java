@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Ключи строк, измененных в текущей транзакции. Триггеры H2 во встроенном режиме выполняются в потоке,
+// который выполняет запрос, поэтому ключи копятся в ThreadLocal до фиксации или отката транзакции
+final class ChangeCapture {
+
+    private static final ThreadLocal<Map<ReplicatedTable, Set<RowKey>>> CHANGES = new ThreadLocal<>();
+
+    // Получатель зафиксированных изменений, null - репликация выключена
+    private static volatile Consumer<Map<ReplicatedTable, Set<RowKey>>> sink;
+
+    private ChangeCapture() {
+    }
+
+    static void setSink(Consumer<Map<ReplicatedTable, Set<RowKey>>> newSink) {
+        sink = newSink;
+    }
+
+    static void capture(ReplicatedTable table, RowKey key) {
+        if (sink == null) {
+            return;
+        }
+        Map<ReplicatedTable, Set<RowKey>> changes = CHANGES.get();
+        if (changes == null) {
+            changes = new EnumMap<>(ReplicatedTable.class);
+            CHANGES.set(changes);
+        }
+        changes.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+    }
+
+    static void commit() {
+        Map<ReplicatedTable, Set<RowKey>> changes = CHANGES.get();
+        if (changes == null) {
+            return;
+        }
+        CHANGES.remove();
+        Consumer<Map<ReplicatedTable, Set<RowKey>>> currentSink = sink;
+        if (currentSink != null) {
+            currentSink.accept(changes);
+        }
+    }
+
+    static void rollback() {
+        CHANGES.remove();
+    }
+
+    // Ключ из одного столбца хранится в first, second при этом равен 0
+    record RowKey(long first, long second) {
+    }
+}
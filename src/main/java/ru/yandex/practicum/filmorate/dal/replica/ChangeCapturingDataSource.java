@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+// Соединения с основной БД, которые сообщают ChangeCapture о фиксации и откате транзакций. В режиме
+// автофиксации каждый запрос фиксируется сам, поэтому изменения публикуются сразу после его выполнения
+class ChangeCapturingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement",
+            "prepareCall");
+
+    ChangeCapturingDataSource(DataSource primary) {
+        super(primary);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    switch (method.getName()) {
+                        case "commit" -> ChangeCapture.commit();
+                        // Откат к точке сохранения отменяет только часть изменений: лишние ключи реплика
+                        // просто перечитает, поэтому ключи сохраняются до фиксации
+                        case "rollback" -> {
+                            if (args == null) {
+                                ChangeCapture.rollback();
+                            }
+                        }
+                        // Включение автофиксации фиксирует открытую транзакцию
+                        case "setAutoCommit" -> {
+                            if ((boolean) args[0]) {
+                                ChangeCapture.commit();
+                            }
+                        }
+                        default -> {
+                            if (STATEMENT_FACTORIES.contains(method.getName())) {
+                                return wrap(connection, (Statement) result, method.getReturnType());
+                            }
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    private static Object wrap(Connection connection, Statement statement, Class<?> type) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute") || !connection.getAutoCommit()) {
+                return invoke(statement, method, args);
+            }
+            // Ключи публикуются и после ошибки: иначе они достались бы следующему запросу этого потока, а часть
+            // пакета могла успеть зафиксироваться. Лишние ключи реплика просто перечитает
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                ChangeCapture.commit();
+            }
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
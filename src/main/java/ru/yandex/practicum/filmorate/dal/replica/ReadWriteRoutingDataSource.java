@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Транзакции @Transactional(readOnly = true) читают с реплики, все остальное идет в основную БД.
+// Решение принимается при получении соединения, поэтому источник оборачивается в LazyConnectionDataSourceProxy:
+// иначе соединение бралось бы в начале транзакции, до того как известен ее признак readOnly
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaSync replicaSync;
+
+    ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaSync replicaSync) {
+        this.replicaSync = replicaSync;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaSync.canRead()
+                ? Route.REPLICA
+                : Route.PRIMARY;
+    }
+
+    private enum Route {
+        PRIMARY,
+        REPLICA
+    }
+}
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+// Что делает чтение, если реплика еще не получила последние зафиксированные изменения
+public enum ReadYourWrites {
+    // Читать с реплики как есть, данные могут отставать
+    OFF,
+    // Читать с основной БД, пока реплика отстает
+    FALLBACK_TO_PRIMARY,
+    // Ждать реплику не дольше max-wait, затем читать с основной БД
+    WAIT_FOR_REPLICA
+}
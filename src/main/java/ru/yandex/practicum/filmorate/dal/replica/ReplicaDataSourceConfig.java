@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Режим с репликой для чтения. Без него используется DataSource, который Spring Boot создает по spring.datasource
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${filmorate.datasource.replica.url}") String url) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(properties.determineUsername())
+                .password(properties.determinePassword())
+                .build();
+    }
+
+    @Bean
+    public ReplicaSync replicaSync(@Qualifier("primaryDataSource") DataSource primary,
+                                   @Qualifier("replicaDataSource") DataSource replica,
+                                   @Value("${filmorate.datasource.replica.read-your-writes:fallback-to-primary}")
+                                   ReadYourWrites readYourWrites,
+                                   @Value("${filmorate.datasource.replica.max-wait:PT0.1S}") Duration maxWait,
+                                   MeterRegistry meterRegistry) {
+        ReplicaSync replicaSync = new ReplicaSync(primary, replica, readYourWrites, maxWait);
+        Gauge.builder("db.replica.lag", replicaSync, ReplicaSync::getLag)
+                .description("Число зафиксированных транзакций, которые реплика еще не применила")
+                .register(meterRegistry);
+        return replicaSync;
+    }
+
+    @Bean
+    public ReplicaPositionFilter replicaPositionFilter(ReplicaSync replicaSync) {
+        return new ReplicaPositionFilter(replicaSync);
+    }
+
+    // Запись в основную БД идет через ChangeCapturingDataSource, чтобы реплика узнавала о зафиксированных изменениях
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaSync replicaSync) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(new ChangeCapturingDataSource(primary), replica, replicaSync));
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Позиция реплики для чтения своих записей. Ответ на запись возвращает позицию зафиксированной транзакции
+// в заголовке X-Replica-Position, а клиент передает ее обратно в следующих запросах. Чтение такого запроса
+// идет с реплики, только когда она применила эту позицию. Запросы без заголовка ничего не ждут
+class ReplicaPositionFilter extends OncePerRequestFilter {
+
+    static final String POSITION_HEADER = "X-Replica-Position";
+
+    private final ReplicaSync replicaSync;
+
+    ReplicaPositionFilter(ReplicaSync replicaSync) {
+        this.replicaSync = replicaSync;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Заголовок ставится в момент фиксации: сервис фиксирует транзакцию до того, как начнется запись тела
+        replicaSync.beginRequest(parsePosition(request.getHeader(POSITION_HEADER)),
+                position -> response.setHeader(POSITION_HEADER, Long.toString(position)));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            replicaSync.endRequest();
+        }
+    }
+
+    // Некорректная позиция не ошибка клиента: запрос просто читает без ожидания реплики
+    private static long parsePosition(String header) {
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Math.max(Long.parseLong(header.trim()), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
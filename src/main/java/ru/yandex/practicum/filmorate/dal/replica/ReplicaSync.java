@@ -0,0 +1,344 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+// Поддерживает реплику в актуальном состоянии. При запуске реплика получает полную копию основной БД,
+// дальше триггеры основной БД сообщают ключи измененных строк, а фоновый поток перечитывает эти строки
+// из основной БД и заменяет ими строки реплики. Строки читаются после фиксации, поэтому повтор и порядок
+// применения не важны: реплика всегда получает последнее зафиксированное состояние строки.
+// Позиция - номер зафиксированной транзакции с изменениями. Чтение своих записей ждет не все позиции,
+// а только последнюю позицию, которую записал или передал в запросе текущий поток
+@Slf4j
+public class ReplicaSync implements SmartInitializingSingleton, DisposableBean, HealthIndicator {
+
+    private static final int KEYS_PER_QUERY = 1000;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final TransactionTemplate replicaTransaction;
+    private final ReadYourWrites readYourWrites;
+    private final Duration maxWait;
+
+    private final BlockingQueue<ChangeSet> changes = new LinkedBlockingQueue<>();
+    private final ReentrantLock positionLock = new ReentrantLock();
+    private final Condition positionApplied = positionLock.newCondition();
+    private long publishedPosition;
+    private long appliedPosition;
+    // Позиция, которую должна применить реплика, чтобы поток прочитал с нее свои записи
+    private final ThreadLocal<Writer> writer = ThreadLocal.withInitial(Writer::new);
+    private volatile String applyError;
+    private volatile boolean ready;
+    private Thread applier;
+
+    public ReplicaSync(DataSource primary, DataSource replica, ReadYourWrites readYourWrites, Duration maxWait) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.replicaTransaction = new TransactionTemplate(new DataSourceTransactionManager(replica));
+        this.readYourWrites = readYourWrites;
+        this.maxWait = maxWait;
+    }
+
+    // Вызывается после выполнения schema.sql и data.sql, но до запуска веб-сервера
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        // Триггеры ставятся до копирования: изменения, сделанные во время копирования, реплика применит после него
+        installTriggers();
+        ChangeCapture.setSink(this::publish);
+        copyPrimary();
+        applier = Thread.ofPlatform().name("replica-sync").daemon().start(this::applyChanges);
+        ready = true;
+        log.info("Реплика скопирована из основной БД за {} мс, политика чтения своих записей {}",
+                (System.nanoTime() - start) / 1_000_000, readYourWrites);
+    }
+
+    @Override
+    public void destroy() {
+        ChangeCapture.setSink(null);
+        if (applier != null) {
+            applier.interrupt();
+            // Источники данных закрываются после этого бина: поток не должен застать их закрытыми
+            try {
+                applier.join(SHUTDOWN_TIMEOUT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // true - читающую транзакцию можно направить на реплику
+    public boolean canRead() {
+        if (!ready) {
+            return false;
+        }
+        if (readYourWrites == ReadYourWrites.OFF) {
+            return true;
+        }
+        long target = writer.get().position;
+        positionLock.lock();
+        try {
+            if (appliedPosition >= target) {
+                return true;
+            }
+            if (readYourWrites == ReadYourWrites.FALLBACK_TO_PRIMARY) {
+                return false;
+            }
+            long nanosLeft = maxWait.toNanos();
+            while (appliedPosition < target) {
+                if (nanosLeft <= 0) {
+                    return false;
+                }
+                nanosLeft = positionApplied.awaitNanos(nanosLeft);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            positionLock.unlock();
+        }
+    }
+
+    // Сколько зафиксированных транзакций реплика еще не применила
+    public long getLag() {
+        positionLock.lock();
+        try {
+            return publishedPosition - appliedPosition;
+        } finally {
+            positionLock.unlock();
+        }
+    }
+
+    // Начало запроса: position - позиция, которую клиент получил в ответ на свою запись, 0 - клиент ничего
+    // не записывал. onWrite получает позицию каждой транзакции, которую поток зафиксирует в этом запросе
+    public void beginRequest(long position, LongConsumer onWrite) {
+        Writer current = writer.get();
+        current.position = position;
+        current.onWrite = onWrite;
+    }
+
+    public void endRequest() {
+        writer.remove();
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = applier != null && applier.isAlive() && applyError == null
+                ? Health.up()
+                : Health.down();
+        if (applyError != null) {
+            health.withDetail("error", applyError);
+        }
+        return health.withDetail("lag", getLag()).build();
+    }
+
+    // Вызывается в потоке, который зафиксировал транзакцию
+    private void publish(Map<ReplicatedTable, Set<ChangeCapture.RowKey>> rowKeys) {
+        long position;
+        positionLock.lock();
+        try {
+            position = ++publishedPosition;
+            changes.add(new ChangeSet(position, rowKeys));
+        } finally {
+            positionLock.unlock();
+        }
+        Writer current = writer.get();
+        current.position = Math.max(current.position, position);
+        if (current.onWrite != null) {
+            current.onWrite.accept(current.position);
+        }
+    }
+
+    // Поток применения не должен завершаться из-за ошибки: иначе реплика навсегда останется устаревшей.
+    // После ошибки пакет повторяется с растущей паузой, пока ошибка видна в health
+    private void applyChanges() {
+        List<ChangeSet> batch = new ArrayList<>();
+        Duration retryDelay = RETRY_DELAY;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (batch.isEmpty()) {
+                    batch.add(changes.take());
+                }
+                changes.drainTo(batch);
+                apply(merge(batch));
+                markApplied(batch.getLast().position());
+                batch.clear();
+                applyError = null;
+                retryDelay = RETRY_DELAY;
+                continue;
+            } catch (InterruptedException e) {
+                return;
+            } catch (DataAccessException e) {
+                applyError = e.getMostSpecificCause().getMessage();
+                log.warn("Не удалось применить изменения к реплике, повтор через {}: {}", retryDelay, applyError);
+            } catch (RuntimeException e) {
+                applyError = e.toString();
+                log.error("Ошибка при применении изменений к реплике, повтор через {}", retryDelay, e);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(retryDelay.toMillis());
+            } catch (InterruptedException interrupted) {
+                return;
+            }
+            retryDelay = retryDelay.multipliedBy(2);
+            if (retryDelay.compareTo(MAX_RETRY_DELAY) > 0) {
+                retryDelay = MAX_RETRY_DELAY;
+            }
+        }
+    }
+
+    private void markApplied(long position) {
+        positionLock.lock();
+        try {
+            appliedPosition = position;
+            positionApplied.signalAll();
+        } finally {
+            positionLock.unlock();
+        }
+    }
+
+    private static Map<ReplicatedTable, Set<ChangeCapture.RowKey>> merge(List<ChangeSet> batch) {
+        Map<ReplicatedTable, Set<ChangeCapture.RowKey>> merged = new EnumMap<>(ReplicatedTable.class);
+        for (ChangeSet changeSet : batch) {
+            changeSet.rowKeys().forEach((table, keys) ->
+                    merged.computeIfAbsent(table, t -> new HashSet<>()).addAll(keys));
+        }
+        return merged;
+    }
+
+    // Строки реплики с измененными ключами удаляются и заново вставляются из основной БД. Строки, которых
+    // в основной БД уже нет, на реплике просто удаляются
+    private void apply(Map<ReplicatedTable, Set<ChangeCapture.RowKey>> rowKeys) {
+        replicaTransaction.executeWithoutResult(status -> rowKeys.forEach((table, keys) -> {
+            List<ChangeCapture.RowKey> keyList = new ArrayList<>(keys);
+            for (int from = 0; from < keyList.size(); from += KEYS_PER_QUERY) {
+                Object[] keyArrays = toArrays(table, keyList.subList(from,
+                        Math.min(from + KEYS_PER_QUERY, keyList.size())));
+                List<Map<String, Object>> rows = primary.queryForList(selectQuery(table), keyArrays);
+                replica.update(deleteQuery(table), keyArrays);
+                insert(table, rows);
+            }
+        }));
+    }
+
+    private void insert(ReplicatedTable table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(rows.getFirst().keySet());
+        String query = "INSERT INTO " + table.tableName() + "(" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        replica.batchUpdate(query, rows.stream()
+                .map(row -> columns.stream().map(row::get).toArray())
+                .toList());
+    }
+
+    private static Object[] toArrays(ReplicatedTable table, List<ChangeCapture.RowKey> keys) {
+        Long[] first = keys.stream().map(ChangeCapture.RowKey::first).toArray(Long[]::new);
+        if (table.keyColumns().size() == 1) {
+            return new Object[]{first};
+        }
+        Long[] second = keys.stream().map(ChangeCapture.RowKey::second).toArray(Long[]::new);
+        return new Object[]{first, second};
+    }
+
+    // Соединение с UNNEST идет по ключу, как и в BulkRepository
+    private static String selectQuery(ReplicatedTable table) {
+        List<String> keyColumns = table.keyColumns();
+        List<String> aliases = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            aliases.add("k" + i);
+            conditions.add("t." + keyColumns.get(i) + " = ids.k" + i);
+        }
+        return "SELECT t.* FROM " + table.tableName() + " AS t " +
+                "JOIN UNNEST(" + keyArrayParameters(table) + ") AS ids(" + String.join(", ", aliases) + ") " +
+                "ON " + String.join(" AND ", conditions);
+    }
+
+    private static String deleteQuery(ReplicatedTable table) {
+        return "DELETE FROM " + table.tableName() + " " +
+                "WHERE (" + String.join(", ", table.keyColumns()) + ") IN " +
+                "(SELECT * FROM UNNEST(" + keyArrayParameters(table) + "))";
+    }
+
+    private static String keyArrayParameters(ReplicatedTable table) {
+        return table.keyColumns().stream()
+                .map(column -> "CAST(? AS BIGINT ARRAY)")
+                .collect(Collectors.joining(", "));
+    }
+
+    private void installTriggers() {
+        for (ReplicatedTable table : ReplicatedTable.values()) {
+            primary.execute("CREATE TRIGGER IF NOT EXISTS " + table.triggerName() + " " +
+                    "AFTER INSERT, UPDATE, DELETE ON " + table.tableName() + " " +
+                    "FOR EACH ROW CALL '" + ReplicationTrigger.class.getName() + "'");
+        }
+    }
+
+    private void copyPrimary() {
+        Path script;
+        try {
+            script = Files.createTempFile("filmorate-replica", ".sql");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать файл для копирования основной БД", e);
+        }
+        try {
+            primary.execute("SCRIPT TO '" + script + "'");
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + script + "'");
+            // Вместе со схемой копируются и триггеры основной БД, на реплике они не нужны
+            for (ReplicatedTable table : ReplicatedTable.values()) {
+                replica.execute("DROP TRIGGER IF EXISTS " + table.triggerName());
+            }
+            // Целостность данных обеспечивает основная БД, а строки таблиц на реплике обновляются независимо
+            replica.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        } finally {
+            try {
+                Files.deleteIfExists(script);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить файл {}: {}", script, e.getMessage());
+            }
+        }
+    }
+
+    private static final class Writer {
+        private long position;
+        private LongConsumer onWrite;
+    }
+
+    private record ChangeSet(long position, Map<ReplicatedTable, Set<ChangeCapture.RowKey>> rowKeys) {
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Таблицы, изменения которых переносятся на реплику, и их ключевые столбцы. Справочники жанров и рейтингов
+// меняются только через data.sql, поэтому реплика получает их при начальном копировании
+enum ReplicatedTable {
+    FILMS("films", "film_id"),
+    USERS("users", "user_id"),
+    FILMS_GENRE("films_genre", "film_id", "genre_id"),
+    LIKES("likes", "film_id", "user_id"),
+    FRIENDS("friends", "user_id", "friend_id");
+
+    private final String tableName;
+    private final List<String> keyColumns;
+
+    ReplicatedTable(String tableName, String... keyColumns) {
+        this.tableName = tableName;
+        this.keyColumns = List.of(keyColumns);
+    }
+
+    String tableName() {
+        return tableName;
+    }
+
+    List<String> keyColumns() {
+        return keyColumns;
+    }
+
+    String triggerName() {
+        return "replicate_" + tableName;
+    }
+
+    static Optional<ReplicatedTable> byTableName(String tableName) {
+        return Arrays.stream(values())
+                .filter(table -> table.tableName.equalsIgnoreCase(tableName))
+                .findFirst();
+    }
+}
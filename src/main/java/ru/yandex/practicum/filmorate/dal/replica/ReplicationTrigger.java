@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+// Триггер H2 на реплицируемых таблицах основной БД: запоминает ключ каждой вставленной, измененной
+// или удаленной строки. Сами строки на реплику не передаются, она перечитывает их по ключам после фиксации
+public class ReplicationTrigger implements Trigger {
+
+    private ReplicatedTable table;
+    private int[] keyIndexes;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                     int type) throws SQLException {
+        table = ReplicatedTable.byTableName(tableName)
+                .orElseThrow(() -> new SQLException("Таблица " + tableName + " не реплицируется"));
+        List<String> keyColumns = table.keyColumns();
+        keyIndexes = new int[keyColumns.size()];
+        try (ResultSet columns = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                int index = keyColumns.indexOf(columns.getString("COLUMN_NAME").toLowerCase());
+                if (index >= 0) {
+                    keyIndexes[index] = columns.getInt("ORDINAL_POSITION") - 1;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+        if (oldRow != null) {
+            ChangeCapture.capture(table, keyOf(oldRow));
+        }
+        if (newRow != null) {
+            ChangeCapture.capture(table, keyOf(newRow));
+        }
+    }
+
+    private ChangeCapture.RowKey keyOf(Object[] row) {
+        long first = ((Number) row[keyIndexes[0]]).longValue();
+        long second = keyIndexes.length > 1 ? ((Number) row[keyIndexes[1]]).longValue() : 0;
+        return new ChangeCapture.RowKey(first, second);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImportErrorDTO {
+    // Номер строки во входном файле, считая заголовок CSV
+    private long line;
+    private String message;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ImportReportDTO {
+    private String entity;
+    private long processed;
+    private long imported;
+    private long rejected;
+    private long durationMs;
+    // Первые ошибки по порядку строк, их общее число - в rejected
+    private List<ImportErrorDTO> errors;
+}
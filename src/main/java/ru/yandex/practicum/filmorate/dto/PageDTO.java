@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@AllArgsConstructor
+public class PageDTO<T> {
+
+    private List<T> items;
+
+    // id последнего элемента страницы, если дальше есть еще данные, иначе null
+    private Long nextCursor;
+
+    // Репозиторий отдает на один элемент больше лимита: по нему понятно, есть ли следующая страница
+    public static <T> PageDTO<T> of(List<T> fetched, int limit, Function<T, Long> idExtractor) {
+        if (fetched.size() <= limit) {
+            return new PageDTO<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new PageDTO<>(items, idExtractor.apply(items.getLast()));
+    }
+}
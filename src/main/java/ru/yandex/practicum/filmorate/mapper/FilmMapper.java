@@ -33,7 +33,7 @@ public class FilmMapper {
                 .genres(genres)
                 .mpa(MpaMapper.mapToMpa(filmDto.getMpa()))
                 .build();
-        log.info("Преобразование FilmDTO в Film успешно завершено");
+        log.debug("Преобразование FilmDTO в Film успешно завершено");
         return film;
     }
 
@@ -55,12 +55,12 @@ public class FilmMapper {
                 .genres(genres)
                 .mpa(MpaMapper.mapToMpa(updateFilmDto.getMpa()))
                 .build();
-        log.info("Преобразование FilmUpdateDTO в Film успешно завершено");
+        log.debug("Преобразование FilmUpdateDTO в Film успешно завершено");
         return film;
     }
 
     public FilmDTO mapToFilmDto(Film film) {
-        log.info("Начало преобразования Film в FilmDTO");
+        log.debug("Начало преобразования Film в FilmDTO");
         List<Genre> genres = film.getGenres();
         List<GenreDTO> responseGenreDto = new ArrayList<>();
 
@@ -79,12 +79,12 @@ public class FilmMapper {
                 .genres(responseGenreDto)
                 .mpa(MpaMapper.mapToMpaDto(film.getMpa()))
                 .build();
-        log.info("Преобразование Film в FilmDTO успешно завершено");
+        log.debug("Преобразование Film в FilmDTO успешно завершено");
         return filmDto;
     }
 
     public FilmDTO mapToFilmDto(FilmUpdateDTO filmUpdateDTO) {
-        log.info("Начало преобразования FilmUpdateDTO в FilmDTO");
+        log.debug("Начало преобразования FilmUpdateDTO в FilmDTO");
         List<GenreDTO> genres = filmUpdateDTO.getGenres();
 
         FilmDTO filmDto = FilmDTO.builder()
@@ -96,7 +96,7 @@ public class FilmMapper {
                 .genres(genres)
                 .mpa(filmUpdateDTO.getMpa())
                 .build();
-        log.info("Преобразование FilmUpdateDTO в FilmDTO успешно завершено");
+        log.debug("Преобразование FilmUpdateDTO в FilmDTO успешно завершено");
         return filmDto;
     }
 
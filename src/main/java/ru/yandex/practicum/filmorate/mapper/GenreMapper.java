@@ -12,7 +12,7 @@ public class GenreMapper {
         Genre genre = Genre.builder()
                 .id(genreDto.getId())
                 .build();
-        log.info("Преобразование GenreDTO в Genre успешно завершено");
+        log.debug("Преобразование GenreDTO в Genre успешно завершено");
         return genre;
     }
 
@@ -21,7 +21,7 @@ public class GenreMapper {
                 .id(genre.getId())
                 .name(genre.getName())
                 .build();
-        log.info("Преобразование Genre в GenreDTO успешно завершено");
+        log.debug("Преобразование Genre в GenreDTO успешно завершено");
         return genreDto;
     }
 }
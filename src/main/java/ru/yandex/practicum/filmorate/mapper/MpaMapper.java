@@ -12,7 +12,7 @@ public class MpaMapper {
         Mpa mpa = Mpa.builder()
                 .id(mpaDto.getId())
                 .build();
-        log.info("Преобразование MpaDto в Mpa успешно завершено");
+        log.debug("Преобразование MpaDto в Mpa успешно завершено");
         return mpa;
     }
 
@@ -21,7 +21,7 @@ public class MpaMapper {
                 .id(mpa.getId())
                 .name(mpa.getName())
                 .build();
-        log.info("Преобразование Mpa в MpaDto успешно завершено");
+        log.debug("Преобразование Mpa в MpaDto успешно завершено");
         return mpaDto;
     }
 }
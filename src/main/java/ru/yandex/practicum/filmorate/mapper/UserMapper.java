@@ -17,7 +17,7 @@ public class UserMapper {
                 .name(userDto.getName())
                 .birthday(userDto.getBirthday())
                 .build();
-        log.info("Преобразование UserDTO в User успешно завершено");
+        log.debug("Преобразование UserDTO в User успешно завершено");
         return user;
     }
 
@@ -29,7 +29,7 @@ public class UserMapper {
                 .name(user.getName())
                 .birthday(user.getBirthday())
                 .build();
-        log.info("Преобразование User в UserDTO успешно завершено");
+        log.debug("Преобразование User в UserDTO успешно завершено");
         return userDto;
     }
 
@@ -41,7 +41,7 @@ public class UserMapper {
                 .name(updateUserDto.getName())
                 .birthday(updateUserDto.getBirthday())
                 .build();
-        log.info("Преобразование UserUpdateDTO в User успешно завершено");
+        log.debug("Преобразование UserUpdateDTO в User успешно завершено");
         return user;
     }
 }
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Locale;
+
+public enum ExportTable {
+    FILMS,
+    FILMS_GENRE,
+    USERS,
+    FRIENDS,
+    LIKES;
+
+    public static ExportTable from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Неизвестная таблица для выгрузки: " + value);
+        }
+    }
+
+    public String fileName(boolean gzip) {
+        return name().toLowerCase(Locale.ROOT) + (gzip ? ".ndjson.gz" : ".ndjson");
+    }
+}
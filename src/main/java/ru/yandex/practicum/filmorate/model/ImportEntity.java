@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Locale;
+
+public enum ImportEntity {
+    FILMS,
+    USERS,
+    LIKES,
+    FRIENDS;
+
+    public static ImportEntity from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Неизвестный тип данных для импорта: " + value);
+        }
+    }
+}
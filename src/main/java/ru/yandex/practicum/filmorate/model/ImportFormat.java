@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Locale;
+
+public enum ImportFormat {
+    // Первая строка - заголовок с именами колонок, значения через запятую, кавычки по RFC 4180
+    CSV,
+    // Один JSON-объект на строку
+    NDJSON;
+
+    public static ImportFormat from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Неизвестный формат импорта: " + value);
+        }
+    }
+
+    public static ImportFormat fromFileName(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+    }
+}
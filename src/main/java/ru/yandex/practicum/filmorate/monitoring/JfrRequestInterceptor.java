@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+// Событие JFR открывается до вызова контроллера и закрывается после записи ответа,
+// поэтому в запись попадают и сериализация, и вложенные события сервисов и репозиториев.
+// Асинхронный запрос (например, потоковый экспорт) проходит через интерцептор дважды: событие открывается
+// при первом вызове, переживает выход из контроллера и закрывается после асинхронной отправки ответа
+public class JfrRequestInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String EVENT_ATTRIBUTE = JfrRequestInterceptor.class.getName() + ".event";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        HttpRequestEvent event = new HttpRequestEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            request.setAttribute(EVENT_ATTRIBUTE, event);
+        }
+        return true;
+    }
+
+    // afterCompletion для первого вызова асинхронного запроса не выполняется: событие остается в атрибуте запроса
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(EVENT_ATTRIBUTE) instanceof HttpRequestEvent event)) {
+            return;
+        }
+        request.removeAttribute(EVENT_ATTRIBUTE);
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = request.getMethod();
+            // Без подходящего шаблона (например, при 404 от обработчика статических ресурсов) пишется сам путь
+            event.route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) instanceof String route
+                    ? route
+                    : request.getRequestURI();
+            event.handler = handler instanceof HandlerMethod method
+                    ? method.getBeanType().getSimpleName() + "." + method.getMethod().getName()
+                    : handler.getClass().getSimpleName();
+            event.status = response.getStatus();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Service;
+
+// Оборачивает методы бинов с аннотацией @Service в событие JFR ServiceCallEvent
+@Component
+public class JfrServiceCallPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    public JfrServiceCallPostProcessor() {
+        MethodInterceptor interceptor = invocation -> {
+            ServiceCallEvent event = new ServiceCallEvent();
+            event.begin();
+            boolean succeeded = false;
+            try {
+                Object result = invocation.proceed();
+                succeeded = true;
+                return result;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.service = invocation.getMethod().getDeclaringClass().getSimpleName();
+                    event.method = invocation.getMethod().getName();
+                    event.succeeded = succeeded;
+                    event.commit();
+                }
+            }
+        };
+        this.advisor = new DefaultPointcutAdvisor(new AnnotationMatchingPointcut(Service.class, true), interceptor);
+        // Событие должно включать время транзакции, поэтому совет ставится перед уже существующими
+        setBeforeExistingAdvisors(true);
+    }
+}
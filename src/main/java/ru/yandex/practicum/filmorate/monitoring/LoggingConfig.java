@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+@Configuration
+public class LoggingConfig {
+
+    // Заменяет условие Logbook по умолчанию: решение принимается до чтения тела,
+    // поэтому у непопавших в выборку запросов тело не буферизуется. logbook.exclude продолжает действовать
+    @Bean
+    public Predicate<HttpRequest> requestCondition(
+            @Value("${filmorate.logging.request-sample-rate:1.0}") double sampleRate) {
+        if (sampleRate >= 1.0) {
+            return request -> true;
+        }
+        if (sampleRate <= 0.0) {
+            return request -> false;
+        }
+        return request -> ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("filmorate.RepositoryQuery")
+@Label("Repository Query")
+@Description("Выполнение SQL-запроса репозитория")
+@Category({"Filmorate", "Database"})
+@StackTrace(false)
+public class RepositoryQueryEvent extends Event {
+
+    @Label("Query")
+    public String query;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
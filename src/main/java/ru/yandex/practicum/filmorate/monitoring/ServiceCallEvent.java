@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("filmorate.ServiceCall")
+@Label("Service Call")
+@Description("Вызов публичного метода сервиса")
+@Category({"Filmorate", "Service"})
+@StackTrace(false)
+public class ServiceCallEvent extends Event {
+
+    @Label("Service")
+    String service;
+
+    @Label("Method")
+    String method;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
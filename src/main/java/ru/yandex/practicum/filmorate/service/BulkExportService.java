@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.ExportRepository;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.ExportTable;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBuffer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+// Каждая строка таблицы сразу пишется в поток одной строкой JSON, поэтому память не зависит от размера таблицы
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkExportService {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_PARALLELISM = 8;
+
+    private final ExportRepository exportRepository;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final ObjectMapper objectMapper;
+
+    public long exportTable(ExportTable table, OutputStream output, boolean gzip) {
+        log.info("Начата выгрузка таблицы {}{}", table, gzip ? " со сжатием" : "");
+        if (table == ExportTable.LIKES) {
+            likeWriteBuffer.flush();
+        }
+        long start = System.nanoTime();
+        try (OutputStream out = gzip ? new GZIPOutputStream(output, BUFFER_SIZE)
+                : new BufferedOutputStream(output, BUFFER_SIZE);
+             JsonGenerator generator = objectMapper.createGenerator(out)) {
+            // Строки разделяются переводом строки, а не пробелом по умолчанию
+            generator.setRootValueSeparator(null);
+            NdjsonRowWriter writer = new NdjsonRowWriter(generator);
+            long rows = exportRepository.forEachRow(table, writer::write);
+            generator.flush();
+            log.info("Таблица {} выгружена: {} строк за {} мс", table, rows, (System.nanoTime() - start) / 1_000_000);
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Таблицы выгружаются в файлы <таблица>.ndjson[.gz]. Одновременно читается не больше parallelism таблиц,
+    // то есть выгрузка занимает не больше parallelism соединений из пула
+    public Map<ExportTable, Long> exportToDirectory(Path directory, List<ExportTable> tables, boolean gzip,
+                                                    int parallelism) {
+        if (parallelism <= 0 || parallelism > MAX_PARALLELISM) {
+            throw new ValidationException("Число потоков выгрузки должно быть от 1 до " + MAX_PARALLELISM);
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось создать каталог " + directory + ": " + e.getMessage());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tables.size()),
+                new ExportThreadFactory());
+        try {
+            Map<ExportTable, Future<Long>> futures = new LinkedHashMap<>();
+            for (ExportTable table : tables) {
+                Path file = directory.resolve(table.fileName(gzip));
+                futures.put(table, executor.submit(() -> exportToFile(table, file, gzip)));
+            }
+
+            Map<ExportTable, Long> rows = new LinkedHashMap<>();
+            for (Map.Entry<ExportTable, Future<Long>> future : futures.entrySet()) {
+                rows.put(future.getKey(), future.getValue().get());
+            }
+            return rows;
+        } catch (ExecutionException e) {
+            throw new InternalServerException("Выгрузка прервана: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Выгрузка прервана");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long exportToFile(ExportTable table, Path file, boolean gzip) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            long rows;
+            try (OutputStream output = Files.newOutputStream(partial)) {
+                rows = exportTable(table, output, gzip);
+            }
+            // Файл появляется под своим именем только целиком, чтобы аналитика не прочитала недописанную выгрузку
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private static final class NdjsonRowWriter {
+        private final JsonGenerator generator;
+        private String[] columns;
+
+        private NdjsonRowWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        private void write(ResultSet rs) throws SQLException {
+            if (columns == null) {
+                columns = readColumns(rs.getMetaData());
+            }
+            try {
+                generator.writeStartObject();
+                for (int i = 0; i < columns.length; i++) {
+                    generator.writeFieldName(columns[i]);
+                    writeValue(rs.getObject(i + 1));
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            switch (value) {
+                case null -> generator.writeNull();
+                case Long number -> generator.writeNumber(number);
+                case Integer number -> generator.writeNumber(number);
+                case Boolean bool -> generator.writeBoolean(bool);
+                case Date date -> generator.writeString(date.toLocalDate().toString());
+                case Timestamp timestamp -> generator.writeString(timestamp.toLocalDateTime().toString());
+                default -> generator.writeString(value.toString());
+            }
+        }
+
+        private static String[] readColumns(ResultSetMetaData metaData) throws SQLException {
+            List<String> columns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT));
+            }
+            return columns.toArray(new String[0]);
+        }
+    }
+
+    // Потоки выгрузки с пониженным приоритетом, чтобы при нехватке процессора уступать обработке запросов
+    private static final class ExportThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "export-" + counter.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.BulkRepository;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.GenreDTO;
+import ru.yandex.practicum.filmorate.dto.ImportErrorDTO;
+import ru.yandex.practicum.filmorate.dto.ImportReportDTO;
+import ru.yandex.practicum.filmorate.dto.UserDTO;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportEntity;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityIds;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.FriendSuggestions;
+import ru.yandex.practicum.filmorate.storage.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.LikeUpdateLock;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.TrendingFilms;
+
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Импорт идет пакетами: каждый пакет пишется одним batchUpdate в своей транзакции.
+// Ошибка записи откатывает только свой пакет, уже записанные пакеты остаются в БД
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkImportService {
+
+    private static final int MAX_CHUNK_SIZE = 100_000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int DATE_LENGTH = "2024-05-01".length();
+    private static final Comparator<Object[]> LIKE_KEY_ORDER = Comparator
+            .<Object[]>comparingLong(row -> (long) row[0])
+            .thenComparingLong(row -> (long) row[1]);
+
+    private final BulkRecordReader bulkRecordReader;
+    private final BulkRepository bulkRepository;
+    private final ReferenceDataCache referenceDataCache;
+    private final FilmLeaderboard filmLeaderboard;
+    private final FilmSearchIndex filmSearchIndex;
+    private final LikeIndex likeIndex;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final LikeUpdateLock likeUpdateLock;
+    private final TrendingFilms trendingFilms;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestions friendSuggestions;
+    private final EntityVersions entityVersions;
+    private final EntityIds entityIds;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${filmorate.import.chunk-size:20000}")
+    private int defaultChunkSize;
+
+    public ImportReportDTO importData(ImportEntity entity, ImportFormat format, InputStream input,
+                                      Integer chunkSize) {
+        int size = chunkSize == null ? defaultChunkSize : chunkSize;
+        if (size <= 0 || size > MAX_CHUNK_SIZE) {
+            throw new ValidationException("Размер пакета должен быть от 1 до " + MAX_CHUNK_SIZE);
+        }
+        log.info("Начат импорт {} в формате {}, размер пакета {}", entity, format, size);
+
+        long start = System.nanoTime();
+        ImportRun run = switch (entity) {
+            case FILMS -> importRecords(input, format, size, this::parseFilm, this::writeFilms);
+            case USERS -> importRecords(input, format, size, this::parseUser, this::writeUsers);
+            case LIKES -> importRecords(input, format, size, this::parseLike, this::writeLikes);
+            case FRIENDS -> importRecords(input, format, size, this::parseFriendship, this::writeFriendships);
+        };
+        refreshStorage(entity);
+
+        ImportReportDTO report = ImportReportDTO.builder()
+                .entity(entity.name().toLowerCase(Locale.ROOT))
+                .processed(run.processed)
+                .imported(run.imported)
+                .rejected(run.rejected)
+                .durationMs((System.nanoTime() - start) / 1_000_000)
+                .errors(run.errors)
+                .build();
+        log.info("Импорт {} завершен: обработано {}, записано {}, отклонено {} за {} мс", entity,
+                report.getProcessed(), report.getImported(), report.getRejected(), report.getDurationMs());
+        return report;
+    }
+
+    private <T> ImportRun importRecords(InputStream input, ImportFormat format, int chunkSize,
+                                        Function<JsonNode, T> parser, ChunkWriter<T> writer) {
+        ImportRun run = new ImportRun();
+        List<Row<T>> chunk = new ArrayList<>(chunkSize);
+        bulkRecordReader.read(input, format, record -> {
+            run.processed++;
+            if (record.error() != null) {
+                run.reject(record.line(), record.error());
+                return;
+            }
+            try {
+                chunk.add(new Row<>(record.line(), parser.apply(record.node())));
+            } catch (ValidationException e) {
+                run.reject(record.line(), e.getMessage());
+                return;
+            }
+            if (chunk.size() == chunkSize) {
+                writeChunk(run, chunk, writer);
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            writeChunk(run, chunk, writer);
+        }
+        return run;
+    }
+
+    private <T> void writeChunk(ImportRun run, List<Row<T>> chunk, ChunkWriter<T> writer) {
+        long rejectedBefore = run.rejected;
+        int errorsBefore = run.errors.size();
+        try {
+            Integer written = transactionTemplate.execute(status -> writer.write(chunk, run));
+            run.imported += written == null ? 0 : written;
+        } catch (DataAccessException e) {
+            log.warn("Пакет со строк {}-{} отклонен: {}", chunk.getFirst().line(), chunk.getLast().line(),
+                    e.getMostSpecificCause().getMessage());
+            // Строки, отклоненные писателем до сбоя, попадут в отчет еще раз вместе со всем пакетом
+            run.rollbackTo(rejectedBefore, errorsBefore);
+            String message = "Пакет не записан: " + e.getMostSpecificCause().getMessage();
+            chunk.forEach(row -> run.reject(row.line(), message));
+        }
+    }
+
+    private void refreshStorage(ImportEntity entity) {
+        // Импорт меняет слишком много записей, чтобы обновлять индексы по одной, поэтому они перечитываются из БД
+        entityVersions.invalidateAll();
+        switch (entity) {
+            case FILMS -> {
+                entityIds.loadFilms();
+                filmSearchIndex.load();
+            }
+            case USERS -> entityIds.loadUsers();
+            // Индексы перечитываются из БД, поэтому лайки из буфера отложенной записи должны попасть туда раньше.
+            // Новые лайки ждут конца перечитывания, чтобы не попасть в индексы дважды
+            case LIKES -> likeUpdateLock.reload(() -> {
+                likeWriteBuffer.flush();
+                filmLeaderboard.load();
+                likeIndex.load();
+                trendingFilms.load();
+            });
+            case FRIENDS -> {
+                friendGraph.load();
+                friendSuggestions.invalidateAll();
+            }
+        }
+    }
+
+    private Film parseFilm(JsonNode node) {
+        FilmDTO filmDTO = convert(normalizeFilm((ObjectNode) node), FilmDTO.class);
+        validate(filmDTO);
+
+        Integer mpaId = filmDTO.getMpa().getId();
+        if (mpaId == null || referenceDataCache.getMpaRatingById(mpaId).isEmpty()) {
+            throw new ValidationException("Не найден рейтинг mpa с id=" + mpaId);
+        }
+        Set<Integer> genreIds = new LinkedHashSet<>();
+        if (filmDTO.getGenres() != null) {
+            for (GenreDTO genre : filmDTO.getGenres()) {
+                if (genre.getId() == null || referenceDataCache.getGenreById(genre.getId()).isEmpty()) {
+                    throw new ValidationException("Не найден жанр с id=" + genre.getId());
+                }
+                genreIds.add(genre.getId());
+            }
+        }
+        filmDTO.setGenres(genreIds.stream()
+                .map(genreId -> GenreDTO.builder().id(genreId).build())
+                .toList());
+        return FilmMapper.mapToFilm(filmDTO);
+    }
+
+    // В CSV рейтинг задается числом, а жанры - списком id через "|"; в NDJSON допустимы и объекты, как в API
+    private ObjectNode normalizeFilm(ObjectNode node) {
+        JsonNode mpa = node.get("mpa");
+        if (mpa != null && mpa.isValueNode() && !mpa.asText().isBlank()) {
+            node.putObject("mpa").set("id", mpa);
+        } else if (mpa != null && mpa.isValueNode()) {
+            node.remove("mpa");
+        }
+
+        JsonNode genres = node.get("genres");
+        if (genres != null && genres.isValueNode()) {
+            ArrayNode genreArray = node.putArray("genres");
+            for (String genreId : genres.asText().split("\\|")) {
+                if (!genreId.isBlank()) {
+                    genreArray.addObject().put("id", genreId.trim());
+                }
+            }
+        } else if (genres != null && genres.isArray()) {
+            ArrayNode genreArray = objectMapper.createArrayNode();
+            genres.forEach(genre -> {
+                if (genre.isValueNode()) {
+                    genreArray.addObject().set("id", genre);
+                } else {
+                    genreArray.add(genre);
+                }
+            });
+            node.set("genres", genreArray);
+        }
+        return node;
+    }
+
+    private User parseUser(JsonNode node) {
+        UserDTO userDTO = convert(node, UserDTO.class);
+        validate(userDTO);
+        if (userDTO.getName() == null || userDTO.getName().isBlank()) {
+            userDTO.setName(userDTO.getLogin());
+        }
+        return UserMapper.mapToUser(userDTO);
+    }
+
+    private Like parseLike(JsonNode node) {
+        return new Like(requireId(node, "filmId"), requireId(node, "userId"), parseTimestamp(node, "createdAt"));
+    }
+
+    private Friendship parseFriendship(JsonNode node) {
+        Friendship friendship = new Friendship(requireId(node, "userId"), requireId(node, "friendId"));
+        if (friendship.userId() == friendship.friendId()) {
+            throw new ValidationException("Нельзя добавить самого себя в друзья.");
+        }
+        return friendship;
+    }
+
+    private int writeFilms(List<Row<Film>> rows, ImportRun run) {
+        List<Film> films = rows.stream()
+                .map(Row::value)
+                .toList();
+        List<Long> filmIds = bulkRepository.addFilms(films);
+
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            long filmId = filmIds.get(i);
+            films.get(i).getGenres().forEach(genre -> filmGenres.add(new Object[]{filmId, genre.getId()}));
+        }
+        bulkRepository.addFilmGenres(filmGenres);
+        return films.size();
+    }
+
+    private int writeUsers(List<Row<User>> rows, ImportRun run) {
+        bulkRepository.addUsers(rows.stream()
+                .map(Row::value)
+                .toList());
+        return rows.size();
+    }
+
+    private int writeLikes(List<Row<Like>> rows, ImportRun run) {
+        List<Object[]> likes = new ArrayList<>(rows.size());
+        for (Row<Like> row : rows) {
+            Like like = row.value();
+            if (!entityIds.containsFilm(like.filmId())) {
+                run.reject(row.line(), "Фильма с id=" + like.filmId() + " нет");
+            } else if (!entityIds.containsUser(like.userId())) {
+                run.reject(row.line(), "Пользователя с id=" + like.userId() + " нет");
+            } else {
+                likes.add(new Object[]{like.filmId(), like.userId(), like.createdAt()});
+            }
+        }
+        likes.sort(LIKE_KEY_ORDER);
+        bulkRepository.mergeLikes(likes);
+        return likes.size();
+    }
+
+    private int writeFriendships(List<Row<Friendship>> rows, ImportRun run) {
+        List<Object[]> friends = new ArrayList<>(rows.size());
+        for (Row<Friendship> row : rows) {
+            Friendship friendship = row.value();
+            if (!entityIds.containsUser(friendship.userId())) {
+                run.reject(row.line(), "Пользователя с id=" + friendship.userId() + " нет");
+            } else if (!entityIds.containsUser(friendship.friendId())) {
+                run.reject(row.line(), "Пользователя с id=" + friendship.friendId() + " нет");
+            } else {
+                // Запись (user_id, friend_id) в таблице friends означает, что friend_id добавил в друзья user_id
+                friends.add(new Object[]{friendship.friendId(), friendship.userId()});
+            }
+        }
+        bulkRepository.mergeFriends(friends);
+        return friends.size();
+    }
+
+    private <T> T convert(JsonNode node, Class<T> type) {
+        try {
+            return objectMapper.treeToValue(node, type);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Некорректные данные: " + e.getOriginalMessage());
+        }
+    }
+
+    private <T> void validate(T value) {
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    private static long requireId(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull() || value.asText().isBlank()) {
+            throw new ValidationException("Не указано поле " + field);
+        }
+        try {
+            long id = Long.parseLong(value.asText().trim());
+            if (id <= 0) {
+                throw new ValidationException("Поле " + field + " должно быть положительным числом");
+            }
+            return id;
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Поле " + field + " должно быть числом");
+        }
+    }
+
+    // Необязательное поле: 2024-05-01T10:00:00Z, 2024-05-01T10:00:00 (время сервера) или 2024-05-01
+    private static Timestamp parseTimestamp(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull() || value.asText().isBlank()) {
+            return null;
+        }
+        String text = value.asText().trim();
+        try {
+            if (text.length() == DATE_LENGTH) {
+                return Timestamp.valueOf(LocalDate.parse(text).atStartOfDay());
+            }
+            TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parse(text);
+            return parsed.isSupported(ChronoField.OFFSET_SECONDS)
+                    ? Timestamp.from(OffsetDateTime.from(parsed).toInstant())
+                    : Timestamp.valueOf(LocalDateTime.from(parsed));
+        } catch (DateTimeException e) {
+            throw new ValidationException("Некорректное значение поля " + field + ": " + text);
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface ChunkWriter<T> {
+        // Возвращает число записанных строк, отклоненные при записи строки передает в run
+        int write(List<Row<T>> rows, ImportRun run);
+    }
+
+    private record Row<T>(long line, T value) {
+    }
+
+    private record Like(long filmId, long userId, Timestamp createdAt) {
+    }
+
+    private record Friendship(long userId, long friendId) {
+    }
+
+    private static class ImportRun {
+        private long processed;
+        private long imported;
+        private long rejected;
+        private final List<ImportErrorDTO> errors = new ArrayList<>();
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportErrorDTO(line, message));
+            }
+        }
+
+        private void rollbackTo(long rejectedBefore, int errorsBefore) {
+            rejected = rejectedBefore;
+            errors.subList(Math.min(errorsBefore, errors.size()), errors.size()).clear();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Читает CSV или NDJSON построчно и отдает каждую запись потребителю, не собирая файл в памяти.
+// Записи CSV превращаются в JSON-объект со строковыми значениями по именам колонок из заголовка
+@Component
+@RequiredArgsConstructor
+public class BulkRecordReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final ObjectMapper objectMapper;
+
+    public void read(InputStream input, ImportFormat format, Consumer<BulkRecord> consumer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8),
+                BUFFER_SIZE)) {
+            switch (format) {
+                case CSV -> readCsv(reader, consumer);
+                case NDJSON -> readNdjson(reader, consumer);
+                default -> throw new IllegalStateException("Неизвестный формат " + format);
+            }
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось прочитать данные для импорта: " + e.getMessage());
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Consumer<BulkRecord> consumer) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                JsonNode node = objectMapper.readTree(line);
+                if (node.isObject()) {
+                    consumer.accept(new BulkRecord(lineNumber, node, null));
+                } else {
+                    consumer.accept(new BulkRecord(lineNumber, null, "Строка должна содержать JSON-объект"));
+                }
+            } catch (JsonProcessingException e) {
+                consumer.accept(new BulkRecord(lineNumber, null, "Некорректный JSON: " + e.getOriginalMessage()));
+            }
+        }
+    }
+
+    private void readCsv(BufferedReader reader, Consumer<BulkRecord> consumer) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            return;
+        }
+        if (!header.isEmpty() && header.charAt(0) == BYTE_ORDER_MARK) {
+            header = header.substring(1);
+        }
+        List<String> headerValues = parseCsvLine(header);
+        if (headerValues == null) {
+            throw new ValidationException("Некорректный заголовок CSV: незакрытая кавычка");
+        }
+        List<String> columns = headerValues.stream()
+                .map(String::trim)
+                .toList();
+
+        long lineNumber = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> values = parseCsvLine(line);
+            if (values == null) {
+                consumer.accept(new BulkRecord(lineNumber, null, "Незакрытая кавычка"));
+                continue;
+            }
+            if (values.size() != columns.size()) {
+                consumer.accept(new BulkRecord(lineNumber, null, "Ожидалось значений: " + columns.size()
+                        + ", получено: " + values.size()));
+                continue;
+            }
+            ObjectNode node = objectMapper.createObjectNode();
+            for (int i = 0; i < columns.size(); i++) {
+                node.put(columns.get(i), values.get(i));
+            }
+            consumer.accept(new BulkRecord(lineNumber, node, null));
+        }
+    }
+
+    // Значения через запятую, в кавычках допускаются запятые и удвоенные кавычки. null - если кавычка не закрыта
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int position = 0;
+        while (position < line.length()) {
+            char c = line.charAt(position);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (position + 1 < line.length() && line.charAt(position + 1) == '"') {
+                    value.append('"');
+                    position++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+            position++;
+        }
+        if (quoted) {
+            return null;
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    // Запись из входного файла: либо разобранный объект, либо описание ошибки разбора
+    public record BulkRecord(long line, JsonNode node, String error) {
+    }
+}
@@ -2,14 +2,14 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataAccessException;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.FilmRepository;
-import ru.yandex.practicum.filmorate.dal.GenreRepository;
-import ru.yandex.practicum.filmorate.dal.MpaRepository;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
 import ru.yandex.practicum.filmorate.dto.FilmUpdateDTO;
 import ru.yandex.practicum.filmorate.dto.GenreDTO;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
@@ -17,9 +17,26 @@ import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.EntityIds;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.LikeUpdateLock;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.TrendingFilms;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,92 +44,213 @@ import java.util.Optional;
 public class FilmService {
 
     private final FilmRepository filmRepository;
-    private final MpaRepository mpaRepository;
-    private final GenreRepository genreRepository;
+    private final ReferenceDataCache referenceDataCache;
+    private final FilmLeaderboard filmLeaderboard;
+    private final LikeIndex likeIndex;
+    private final TrendingFilms trendingFilms;
+    private final FilmSearchIndex filmSearchIndex;
+    private final EntityVersions entityVersions;
+    private final EntityIds entityIds;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final LikeUpdateLock likeUpdateLock;
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int FIRST_FILM_YEAR = 1895;
+
+    @Transactional
     public FilmDTO create(FilmDTO filmDTO) {
         checkMpaRating(filmDTO);
         checkGenre(filmDTO);
 
-        Long filmId = filmRepository.create(FilmMapper.mapToFilm(filmDTO));
-        if (filmId == null) {
+        Film addedFilm = filmRepository.create(FilmMapper.mapToFilm(filmDTO));
+        if (addedFilm == null) {
             throw new InternalServerException("Не удалось добавить в БД фильм " + filmDTO);
         }
 
-        Film addedFilm = filmRepository.getFilmById(filmId);
-        if (filmDTO.getGenres() != null) {
-            for (GenreDTO genre : filmDTO.getGenres()) {
-                try {
-                    filmRepository.addGenreToFilm(addedFilm.getId(), genre.getId());
-                } catch (DataAccessException exception) {
-                    throw new ValidationException("Не найден жанр с id=" + genre.getId());
-                }
-            }
-        }
+        // У нового фильма жанров еще нет, поэтому в БД уходят все запрошенные
+        Set<Integer> genreIds = getGenreIds(filmDTO.getGenres());
+        filmRepository.syncGenres(addedFilm.getId(), Set.of(), genreIds);
+        addedFilm.setGenres(getGenres(genreIds));
 
-        // Обновляем данные по фильму после добавления жанров
-        addedFilm = filmRepository.getFilmById(filmId);
+        filmSearchIndex.index(addedFilm);
+        entityIds.addFilm(addedFilm.getId());
+        entityVersions.bumpFilm(addedFilm.getId());
         log.info("В БД добавлен фильм {}", addedFilm);
         return FilmMapper.mapToFilmDto(addedFilm);
     }
 
+    @Transactional
     public FilmDTO update(FilmUpdateDTO filmDTO) {
         checkMpaRating(filmDTO);
         checkGenre(filmDTO);
-
-        int rowsUpdated = filmRepository.update(FilmMapper.mapToFilm(filmDTO));
-        if (rowsUpdated == 0) {
+        if (!entityIds.containsFilm(filmDTO.getId())) {
             throw new NotFoundException("Фильма с id=" + filmDTO.getId() + " нет");
         }
 
-        Film film = filmRepository.getFilmById(filmDTO.getId());
+        Film film = filmRepository.update(FilmMapper.mapToFilm(filmDTO))
+                .orElseThrow(() -> new NotFoundException("Фильма с id=" + filmDTO.getId() + " нет"));
+
+        // Если жанры в запросе не переданы, оставляем сохраненные без изменений
+        Set<Integer> storedGenreIds = filmRepository.getGenreIds(film.getId());
+        Set<Integer> genreIds = storedGenreIds;
+        if (filmDTO.getGenres() != null) {
+            genreIds = getGenreIds(filmDTO.getGenres());
+            filmRepository.syncGenres(film.getId(), storedGenreIds, genreIds);
+        }
+        film.setGenres(getGenres(genreIds));
+
+        filmLeaderboard.updateCategories(film.getId(), film.getReleaseDate().getYear(), film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet()));
+        filmSearchIndex.index(film);
+        entityVersions.bumpFilm(film.getId());
 
         log.info("В базе данных обновлен фильм {}", film);
         return FilmMapper.mapToFilmDto(film);
     }
 
-    public List<FilmDTO> findAll() {
-        List<FilmDTO> films = filmRepository.findAll()
+    @Transactional(readOnly = true)
+    public PageDTO<FilmDTO> findAll(long afterId, int limit) {
+        checkPage(afterId, limit);
+        List<FilmDTO> films = filmRepository.findPage(afterId, Math.min(limit, MAX_PAGE_SIZE) + 1)
                 .stream()
                 .map(FilmMapper::mapToFilmDto)
                 .toList();
-        log.info("Получен список всех фильмов: {}", films);
-        return films;
+        PageDTO<FilmDTO> page = PageDTO.of(films, Math.min(limit, MAX_PAGE_SIZE), FilmDTO::getId);
+        log.debug("Получена страница фильмов: {} шт., следующий курсор {}", page.getItems().size(), page.getNextCursor());
+        return page;
     }
 
+    public void streamAll(Consumer<FilmDTO> consumer) {
+        log.info("Получен запрос на потоковую выгрузку всех фильмов");
+        filmRepository.streamAll(film -> consumer.accept(FilmMapper.mapToFilmDto(film)));
+    }
+
+    @Transactional(readOnly = true)
     public FilmDTO getFilmById(long filmId) {
-        log.info("Получен запрос на получение фильма с id={}", filmId);
-        Film film = filmRepository.getFilmById(filmId);
-        return FilmMapper.mapToFilmDto(film);
+        log.debug("Получен запрос на получение фильма с id={}", filmId);
+        return FilmMapper.mapToFilmDto(getFilm(filmId));
     }
 
-    public FilmDTO addLike(long filmId, long userId) {
+    // Тег вычисляется без обращения к БД, поэтому повторный запрос с If-None-Match обходится дешевле чтения фильма.
+    // Существование проверяется до сравнения тегов: иначе на тег несуществующего фильма пришел бы 304 вместо 404
+    public String getFilmETag(long filmId) {
+        checkFilm(filmId);
+        return entityVersions.getFilmETag(filmId);
+    }
+
+    public void addLike(long filmId, long userId) {
         log.info("Получен запрос на добавление лайка фильму с id={} от пользователя с id={}", filmId, userId);
-        filmRepository.addLike(filmId, userId);
-        return getFilmById(filmId);
+        checkFilmAndUser(filmId, userId);
+        likeUpdateLock.update(() -> addLikeNow(filmId, userId));
+    }
 
+    private void addLikeNow(long filmId, long userId) {
+        Instant likedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        boolean added;
+        if (likeWriteBuffer.isEnabled()) {
+            added = likeWriteBuffer.addLike(filmId, userId, likedAt);
+        } else {
+            added = filmRepository.addLike(filmId, userId, likedAt) > 0;
+            if (added) {
+                likeIndex.addLike(filmId, userId);
+            }
+        }
+        if (added) {
+            filmLeaderboard.increment(filmId);
+            trendingFilms.addLike(filmId, likedAt);
+            entityVersions.bumpFilm(filmId);
+        }
     }
 
-    public FilmDTO removeLike(long filmId, long userId) {
+    public void removeLike(long filmId, long userId) {
         log.info("Получен запрос на удаление лайка фильму с id={} от пользователя с id={}", filmId, userId);
-        int rowsRemoved = filmRepository.removeLike(filmId, userId);
-        if (rowsRemoved == 0) {
-            throw new InternalServerException("Данный пользователь лайк не ставил");
+        checkFilmAndUser(filmId, userId);
+        likeUpdateLock.update(() -> removeLikeNow(filmId, userId));
+    }
+
+    private void removeLikeNow(long filmId, long userId) {
+        Optional<Instant> removedLike = likeWriteBuffer.isEnabled()
+                ? likeWriteBuffer.removeLike(filmId, userId)
+                : filmRepository.removeLike(filmId, userId);
+        Instant likedAt = removedLike
+                .orElseThrow(() -> new InternalServerException("Данный пользователь лайк не ставил"));
+        if (!likeWriteBuffer.isEnabled()) {
+            likeIndex.removeLike(filmId, userId);
         }
-        return getFilmById(filmId);
+        filmLeaderboard.decrement(filmId);
+        trendingFilms.removeLike(filmId, likedAt);
+        entityVersions.bumpFilm(filmId);
     }
 
-    public List<FilmDTO> getPopularFilms(int count) {
-        log.info("Получен запрос на получение {} самых популярных фильмов", count);
-        List<Film> popularFilms = filmRepository.findPopularFilms(count);
-        log.info("Получен список самых популярных фильмов: {}", popularFilms);
+    // genreId и year равные null означают, что фильтр по жанру или году не задан
+    @Transactional(readOnly = true)
+    public List<FilmDTO> getPopularFilms(int count, Integer genreId, Integer year) {
+        log.debug("Получен запрос на получение {} самых популярных фильмов, жанр {}, год {}", count, genreId, year);
+        if (count <= 0) {
+            throw new ValidationException("Количество фильмов должно быть положительным числом");
+        }
+        // Рейтинг хранит "любой жанр" и "любой год" как 0, поэтому такие значения фильтра недопустимы
+        if (genreId != null && genreId <= 0) {
+            throw new ValidationException("Id жанра должен быть положительным числом");
+        }
+        if (year != null && year < FIRST_FILM_YEAR) {
+            throw new ValidationException("Год выпуска не может быть раньше " + FIRST_FILM_YEAR);
+        }
+        if (genreId != null && referenceDataCache.getGenreById(genreId).isEmpty()) {
+            throw new NotFoundException("Жанр с id=" + genreId + " не найден");
+        }
+        List<Film> popularFilms = filmRepository.getFilmsByIds(
+                filmLeaderboard.getTop(genreId, year, Math.min(count, MAX_PAGE_SIZE)));
+        log.debug("Получено самых популярных фильмов: {}", popularFilms.size());
         return popularFilms.stream()
                 .map(FilmMapper::mapToFilmDto)
                 .toList();
     }
 
+    public List<FilmDTO> getTrendingFilms(String window, int count) {
+        log.debug("Получен запрос на получение {} фильмов в тренде за окно {}", count, window);
+        if (count <= 0) {
+            throw new ValidationException("Количество фильмов должно быть положительным числом");
+        }
+        Duration duration;
+        try {
+            duration = DurationStyle.detectAndParse(window);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректное окно трендов: " + window);
+        }
+        if (!trendingFilms.getWindows().contains(duration)) {
+            throw new ValidationException("Окно трендов " + window + " не поддерживается, доступны: "
+                    + trendingFilms.getWindows());
+        }
+
+        List<Film> trendingFilmList = filmRepository.getFilmsByIds(
+                trendingFilms.getTop(duration, Math.min(count, MAX_PAGE_SIZE)));
+        log.debug("Получено фильмов в тренде: {}", trendingFilmList.size());
+        return trendingFilmList.stream()
+                .map(FilmMapper::mapToFilmDto)
+                .toList();
+    }
+
+    public List<FilmDTO> searchFilms(String query, int count) {
+        log.debug("Получен запрос на поиск {} фильмов по запросу '{}'", count, query);
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (count <= 0) {
+            throw new ValidationException("Количество фильмов должно быть положительным числом");
+        }
+
+        List<Film> foundFilms = filmRepository.getFilmsByIds(
+                filmSearchIndex.search(query, Math.min(count, MAX_PAGE_SIZE)));
+        log.debug("По запросу '{}' найдено фильмов: {}", query, foundFilms.size());
+        return foundFilms.stream()
+                .map(FilmMapper::mapToFilmDto)
+                .toList();
+    }
+
     public void checkMpaRating(FilmDTO filmDTO) {
-        Optional<Mpa> mpaOptional = mpaRepository.getMpaRatingById(filmDTO.getMpa().getId());
+        Optional<Mpa> mpaOptional = referenceDataCache.getMpaRatingById(filmDTO.getMpa().getId());
         if (mpaOptional.isEmpty()) {
             throw new ValidationException("Не найден рейтинг mpa с id=" + filmDTO.getMpa().getId());
         }
@@ -120,7 +258,7 @@ public class FilmService {
 
 
     public void checkMpaRating(FilmUpdateDTO filmUpdateDTO) {
-        Optional<Mpa> mpaOptional = mpaRepository.getMpaRatingById(filmUpdateDTO.getMpa().getId());
+        Optional<Mpa> mpaOptional = referenceDataCache.getMpaRatingById(filmUpdateDTO.getMpa().getId());
         if (mpaOptional.isEmpty()) {
             throw new ValidationException("Не найден рейтинг mpa с id=" + filmUpdateDTO.getMpa().getId());
         }
@@ -129,7 +267,7 @@ public class FilmService {
     public void checkGenre(FilmDTO filmDTO) {
         if (filmDTO.getGenres() != null) {
             for (GenreDTO genre : filmDTO.getGenres()) {
-                Optional<Genre> genreOptional = genreRepository.getGenreById(genre.getId());
+                Optional<Genre> genreOptional = referenceDataCache.getGenreById(genre.getId());
                 if (genreOptional.isEmpty()) {
                     throw new ValidationException("Не найден жанр с id=" + genre.getId());
                 }
@@ -140,7 +278,7 @@ public class FilmService {
     public void checkGenre(FilmUpdateDTO filmUpdateDTO) {
         if (filmUpdateDTO.getGenres() != null) {
             for (GenreDTO genre : filmUpdateDTO.getGenres()) {
-                Optional<Genre> genreOptional = genreRepository.getGenreById(genre.getId());
+                Optional<Genre> genreOptional = referenceDataCache.getGenreById(genre.getId());
                 if (genreOptional.isEmpty()) {
                     throw new ValidationException("Не найден жанр с id=" + genre.getId());
                 }
@@ -148,4 +286,52 @@ public class FilmService {
         }
 
     }
+
+    private void checkPage(long afterId, int limit) {
+        if (afterId < 0) {
+            throw new ValidationException("Курсор страницы не может быть отрицательным");
+        }
+        if (limit <= 0) {
+            throw new ValidationException("Размер страницы должен быть положительным числом");
+        }
+    }
+
+    private Set<Integer> getGenreIds(List<GenreDTO> genres) {
+        if (genres == null) {
+            return Set.of();
+        }
+        return genres.stream()
+                .map(GenreDTO::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    // Жанры уже проверены checkGenre, поэтому берутся из кэша справочников в порядке id, как при чтении из БД
+    private List<Genre> getGenres(Set<Integer> genreIds) {
+        return genreIds.stream()
+                .sorted()
+                .map(referenceDataCache::getGenreById)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Без проверки отсутствующий фильм или пользователь обнаружился бы только по ошибке внешнего ключа,
+    // а в режиме отложенной записи - лишь при сбросе буфера
+    private void checkFilmAndUser(long filmId, long userId) {
+        checkFilm(filmId);
+        if (!entityIds.containsUser(userId)) {
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+        }
+    }
+
+    private void checkFilm(long filmId) {
+        if (!entityIds.containsFilm(filmId)) {
+            throw new NotFoundException("Фильм с id=" + filmId + " не найден");
+        }
+    }
+
+    private Film getFilm(long filmId) {
+        checkFilm(filmId);
+        return filmRepository.getFilmById(filmId)
+                .orElseThrow(() -> new NotFoundException("Фильм с id=" + filmId + " не найден"));
+    }
 }
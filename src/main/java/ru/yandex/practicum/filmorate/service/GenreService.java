@@ -3,11 +3,12 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.GenreRepository;
 import ru.yandex.practicum.filmorate.dto.GenreDTO;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.GenreMapper;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.util.List;
 import java.util.Optional;
@@ -16,19 +17,32 @@ import java.util.Optional;
 @Service
 @RequiredArgsConstructor
 public class GenreService {
-    private final GenreRepository genreRepository;
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityVersions entityVersions;
+
+    public String getETag() {
+        return entityVersions.getReferenceDataETag(referenceDataCache.getVersion());
+    }
+
+    // Существование проверяется до сравнения тегов, иначе на запрос несуществующего id с тегом списка пришел бы 304
+    public String getGenreETag(int id) {
+        if (referenceDataCache.getGenreById(id).isEmpty()) {
+            throw new NotFoundException("Жанр с id=" + id + " не найден");
+        }
+        return getETag();
+    }
 
     public List<GenreDTO> getAllGenres() {
-        log.info("Получен запрос на получение всех жанров");
-        List<Genre> genres = genreRepository.getAllGenres();
+        log.debug("Получен запрос на получение всех жанров");
+        List<Genre> genres = referenceDataCache.getAllGenres();
         return genres.stream()
                 .map(GenreMapper::mapToGenreDto)
                 .toList();
     }
 
     public GenreDTO getGenreById(int id) {
-        log.info("Получен запрос на получение жанра с id={}", id);
-        Optional<Genre> genreOptional = genreRepository.getGenreById(id);
+        log.debug("Получен запрос на получение жанра с id={}", id);
+        Optional<Genre> genreOptional = referenceDataCache.getGenreById(id);
         if (genreOptional.isEmpty()) {
             throw new NotFoundException("Жанр с id=" + id + " не найден");
         }
@@ -3,11 +3,12 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.MpaRepository;
 import ru.yandex.practicum.filmorate.dto.MpaDTO;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.MpaMapper;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.util.List;
 import java.util.Optional;
@@ -16,19 +17,32 @@ import java.util.Optional;
 @Service
 @RequiredArgsConstructor
 public class MpaService {
-    private final MpaRepository mpaRepository;
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityVersions entityVersions;
+
+    public String getETag() {
+        return entityVersions.getReferenceDataETag(referenceDataCache.getVersion());
+    }
+
+    // Существование проверяется до сравнения тегов, иначе на запрос несуществующего id с тегом списка пришел бы 304
+    public String getMpaRatingETag(int id) {
+        if (referenceDataCache.getMpaRatingById(id).isEmpty()) {
+            throw new NotFoundException("Рейтинг Mpa с id=" + id + " не найден");
+        }
+        return getETag();
+    }
 
     public List<MpaDTO> getAllMpaRatings() {
-        log.info("Получен запрос на получение всех рейтингов");
-        List<Mpa> mpa = mpaRepository.getAllMpaRatings();
+        log.debug("Получен запрос на получение всех рейтингов");
+        List<Mpa> mpa = referenceDataCache.getAllMpaRatings();
         return mpa.stream()
                 .map(MpaMapper::mapToMpaDto)
                 .toList();
     }
 
     public MpaDTO getMpaRatingById(int mpaId) {
-        log.info("Получен запрос на получение mpa рейтинга с id={}", mpaId);
-        Optional<Mpa> mpaOptional = mpaRepository.getMpaRatingById(mpaId);
+        log.debug("Получен запрос на получение mpa рейтинга с id={}", mpaId);
+        Optional<Mpa> mpaOptional = referenceDataCache.getMpaRatingById(mpaId);
         if (mpaOptional.isEmpty()) {
             throw new NotFoundException("Рейтинг Mpa с id=" + mpaId + " не найден");
         }
@@ -3,17 +3,34 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
 import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
 import ru.yandex.practicum.filmorate.dto.UserUpdateDTO;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.User;
-
+import ru.yandex.practicum.filmorate.storage.EntityIds;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.FilmRecommendations;
+import ru.yandex.practicum.filmorate.storage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.FriendSuggestions;
+import ru.yandex.practicum.filmorate.storage.LongArrays;
+
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +38,14 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final FilmRepository filmRepository;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestions friendSuggestions;
+    private final FilmRecommendations filmRecommendations;
+    private final EntityVersions entityVersions;
+    private final EntityIds entityIds;
+
+    private static final int MAX_PAGE_SIZE = 1000;
 
     public UserDTO create(UserDTO newUser) {
         if (newUser.getName() == null || newUser.getName().isBlank()) {
@@ -28,141 +53,188 @@ public class UserService {
             log.info("Пользователю {} присвоено имя, равное логину {}", newUser, newUser.getLogin());
         }
 
-        Long userId = userRepository.create(UserMapper.mapToUser(newUser));
-        if (userId == null) {
-            throw new InternalServerException("Не удалось добавить в БД пользователя " + userId);
+        User addedUser = userRepository.create(UserMapper.mapToUser(newUser));
+        if (addedUser == null) {
+            throw new InternalServerException("Не удалось добавить в БД пользователя " + newUser);
         }
 
-        User addedUser = userRepository.getUserById(userId).get();
+        entityIds.addUser(addedUser.getId());
+        entityVersions.bumpUser(addedUser.getId());
         log.info("В БД добавлен пользователь {}", addedUser);
         return UserMapper.mapToUserDto(addedUser);
     }
 
     public UserDTO update(UserUpdateDTO newUser) {
-        int rowsUpdated = userRepository.update(newUser);
-        if (rowsUpdated == 0) {
+        if (!entityIds.containsUser(newUser.getId())) {
             throw new NotFoundException("Пользователя с id=" + newUser.getId() + " не существует");
         }
-
-        User user = userRepository.getUserById(newUser.getId()).get();
+        User user = userRepository.update(newUser)
+                .orElseThrow(() -> new NotFoundException("Пользователя с id=" + newUser.getId() + " не существует"));
+        entityVersions.bumpUser(user.getId());
         log.info("Обновлен пользователь {}", user);
         return UserMapper.mapToUserDto(user);
     }
 
-    public List<UserDTO> findAll() {
-        List<User> users = userRepository.findAll();
-        log.info("Получен список всех пользователей: {}", users);
-        return users.stream()
+    @Transactional(readOnly = true)
+    public PageDTO<UserDTO> findAll(long afterId, int limit) {
+        checkPage(afterId, limit);
+        List<UserDTO> users = userRepository.findPage(afterId, Math.min(limit, MAX_PAGE_SIZE) + 1)
+                .stream()
                 .map(UserMapper::mapToUserDto)
                 .toList();
+        PageDTO<UserDTO> page = PageDTO.of(users, Math.min(limit, MAX_PAGE_SIZE), UserDTO::getId);
+        log.debug("Получена страница пользователей: {} шт., следующий курсор {}", page.getItems().size(), page.getNextCursor());
+        return page;
     }
 
-    public UserDTO getUserById(long userId) {
-        log.info("Получен запрос на получение пользователя по id={}", userId);
-        Optional<User> userOptional = userRepository.getUserById(userId);
-        if (userOptional.isEmpty()) {
-            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+    public void streamAll(Consumer<UserDTO> consumer) {
+        log.info("Получен запрос на потоковую выгрузку всех пользователей");
+        try (Stream<User> users = userRepository.streamAll()) {
+            users.map(UserMapper::mapToUserDto)
+                    .forEach(consumer);
         }
-        return UserMapper.mapToUserDto(userOptional.get());
     }
 
+    @Transactional(readOnly = true)
+    public UserDTO getUserById(long userId) {
+        log.debug("Получен запрос на получение пользователя по id={}", userId);
+        return UserMapper.mapToUserDto(getUser(userId));
+    }
+
+    public String getUserETag(long userId) {
+        checkUserById(userId);
+        return entityVersions.getUserETag(userId);
+    }
+
+    @Transactional
     public UserDTO addFriend(long userId, long friendId) {
         log.info("Получен запрос на добавление пользователю с id={} друга с id={}", userId, friendId);
         if (userId == friendId) {
             throw new ValidationException("Нельзя добавить самого себя в друзья.");
         }
 
-        checkUserById(userId);
-        checkUserById(friendId);
-
-        User user = userRepository.addFriend(userId, friendId);
+        User user = lockUsers(userId, friendId);
+        // Статус дружбы у обоих пользователей выставляется тем же запросом, что и заявка
+        userRepository.addFriend(userId, friendId);
+        friendGraph.addFriend(userId, friendId);
+        friendSuggestions.invalidate(userId, friendId);
+        entityVersions.bumpUser(userId);
+        entityVersions.bumpUser(friendId);
         log.info("Заявка на дружбу успешно отправлена");
 
-        updateFriendshipStatus(userId, friendId);
-
         return UserMapper.mapToUserDto(user);
     }
 
-    public void updateFriendshipStatus(long userId, long friendId) {
-        int numberOfFirstFriendshipQueries = userRepository.getNumberOfFriendshipQueries(userId, friendId);
-        int numberOfSecondFriendshipQueries = userRepository.getNumberOfFriendshipQueries(friendId, userId);
-
-        // Если у обоих есть записи о дружбе, то обновляем статус дружбы у обоих друзей
-        if (numberOfFirstFriendshipQueries == 1 && numberOfSecondFriendshipQueries == 1) {
-            int rowsUpdated = userRepository.updateFriendship(userId, friendId);
-            if (rowsUpdated != 1) {
-                throw new InternalServerException("Не удалось обновить статус дружбы между пользователями с id=" + userId + " и id=" + friendId);
-            }
-
-            rowsUpdated = userRepository.updateFriendship(friendId, userId);
-            if (rowsUpdated != 1) {
-                throw new InternalServerException("Не удалось обновить статус дружбы между пользователями с id=" + friendId + " и id=" + userId);
-            }
-        }
-    }
-
+    @Transactional
     public UserDTO removeFriend(long userId, long friendId) {
         log.info("Получен запрос на удаление пользователя с id={} из друзей пользователя с id={}", friendId, userId);
         if (userId == friendId) {
             throw new ValidationException("Вы не можете удалить самого себя из друзей.");
         }
 
-        checkUserById(userId);
-        checkUserById(friendId);
-
-        User user = userRepository.removeFriend(userId, friendId);
+        User user = lockUsers(userId, friendId);
+        userRepository.removeFriend(userId, friendId);
+        friendGraph.removeFriend(userId, friendId);
+        friendSuggestions.invalidate(userId, friendId);
+        entityVersions.bumpUser(userId);
+        entityVersions.bumpUser(friendId);
         return UserMapper.mapToUserDto(user);
     }
 
+    @Transactional(readOnly = true)
     public List<UserDTO> getFriendsById(long userId) {
-        log.info("Получен запрос на получение друзей пользователя с id={}", userId);
+        log.debug("Получен запрос на получение друзей пользователя с id={}", userId);
 
         checkUserById(userId);
 
-        List<User> friends = userRepository.getFriendsById(userId);
-        log.info("Список всех друзей получен");
+        List<User> friends = userRepository.getUsersByIds(friendGraph.getFriends(userId));
+        log.debug("Получено друзей: {}", friends.size());
         return friends.stream()
                 .map(UserMapper::mapToUserDto)
                 .toList();
     }
 
     public List<UserDTO> getMutualFriends(long userId, long friendId) {
-        log.info("Получен запрос на получение общих друзей пользователей с id={} и id={}", userId, friendId);
+        log.debug("Получен запрос на получение общих друзей пользователей с id={} и id={}", userId, friendId);
 
         if (userId == friendId) {
             throw new ValidationException("Нельзя искать общих друзей с самим собой.");
         }
 
-        List<User> userFriends = userRepository.getFriendsById(userId);
-        List<User> otherUserFriends = userRepository.getFriendsById(friendId);
-        List<User> mutualFriends;
-
-        if (userFriends != null && otherUserFriends != null) {
-            List<Long> otherUserFriendsId = userRepository.getFriendsById(friendId)
-                    .stream()
-                    .map(User::getId)
-                    .toList();
-            mutualFriends = userFriends
-                    .stream()
-                    .filter(user -> otherUserFriendsId.contains(user.getId()))
-                    .toList();
-        } else {
-            log.info("У пользователей с id={} и id={} нет общих друзей", userId, friendId);
-            throw new NotFoundException("У пользователей с id=" + userId + " и id=" + friendId + " нет общих друзей");
+        List<User> mutualFriends = userRepository.getUsersByIds(friendGraph.getMutualFriends(userId, friendId));
+        log.debug("Получено общих друзей: {}", mutualFriends.size());
+        return mutualFriends.stream()
+                .map(UserMapper::mapToUserDto)
+                .toList();
+    }
+
+    public List<UserDTO> getFriendSuggestions(long userId, int limit) {
+        log.debug("Получен запрос на получение {} рекомендаций друзей для пользователя с id={}", limit, userId);
+        if (limit <= 0) {
+            throw new ValidationException("Количество рекомендаций должно быть положительным числом");
         }
 
-        log.info("Список общих друзей {}", mutualFriends);
-        return mutualFriends.stream()
+        checkUserById(userId);
+
+        long[] suggestedIds = friendSuggestions.getSuggestions(userId, Math.min(limit, MAX_PAGE_SIZE));
+        Map<Long, User> usersById = userRepository.getUsersByIds(LongArrays.sortedDistinct(suggestedIds))
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        // Сохраняем порядок рекомендаций: сначала кандидаты с большим числом общих друзей
+        return Arrays.stream(suggestedIds)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
                 .map(UserMapper::mapToUserDto)
                 .toList();
     }
 
+    public List<FilmDTO> getRecommendations(long userId, int limit) {
+        log.debug("Получен запрос на получение {} рекомендованных фильмов для пользователя с id={}", limit, userId);
+        if (limit <= 0) {
+            throw new ValidationException("Количество рекомендаций должно быть положительным числом");
+        }
+
+        checkUserById(userId);
+
+        long[] recommendedIds = filmRecommendations.recommend(userId, Math.min(limit, MAX_PAGE_SIZE));
+        return filmRepository.getFilmsByIds(Arrays.stream(recommendedIds).boxed().toList())
+                .stream()
+                .map(FilmMapper::mapToFilmDto)
+                .toList();
+    }
+
+    private void checkPage(long afterId, int limit) {
+        if (afterId < 0) {
+            throw new ValidationException("Курсор страницы не может быть отрицательным");
+        }
+        if (limit <= 0) {
+            throw new ValidationException("Размер страницы должен быть положительным числом");
+        }
+    }
+
     private void checkUserById(long userId) {
-        log.info("Получен запрос на проверку наличия пользователя с id={}", userId);
-        Optional<User> userOptional = userRepository.getUserById(userId);
-        if (userOptional.isEmpty()) {
+        log.debug("Получен запрос на проверку наличия пользователя с id={}", userId);
+        if (!entityIds.containsUser(userId)) {
             throw new NotFoundException("Пользователь с id=" + userId + " не найден");
         }
     }
 
+    // Блокирует обоих пользователей до конца транзакции. Дружба в ответ не входит,
+    // поэтому отдается пользователь userId в том виде, в каком его прочитал этот же запрос
+    private User lockUsers(long userId, long friendId) {
+        checkUserById(userId);
+        checkUserById(friendId);
+        return userRepository.lockUsers(userId, friendId)
+                .stream()
+                .filter(user -> user.getId() == userId)
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Пользователь с id=" + userId + " не найден"));
+    }
+
+    private User getUser(long userId) {
+        checkUserById(userId);
+        return userRepository.getUserById(userId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с id=" + userId + " не найден"));
+    }
+
 }
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Множества id существующих фильмов и пользователей: проверки существования и ответы 404 обходятся без запросов к БД
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EntityIds {
+
+    private final FilmRepository filmRepository;
+    private final UserRepository userRepository;
+
+    private final Ids filmIds = new Ids();
+    private final Ids userIds = new Ids();
+
+    @PostConstruct
+    public void load() {
+        loadFilms();
+        loadUsers();
+    }
+
+    public void loadFilms() {
+        PagedBitSet ids = filmIds.load(filmRepository::forEachFilmId);
+        log.info("Загружены id фильмов: {}, страницы занимают {} КБ", ids.size(), ids.pageBytes() / 1024);
+    }
+
+    public void loadUsers() {
+        PagedBitSet ids = userIds.load(userRepository::forEachUserId);
+        log.info("Загружены id пользователей: {}, страницы занимают {} КБ", ids.size(), ids.pageBytes() / 1024);
+    }
+
+    public boolean containsFilm(long filmId) {
+        return filmIds.contains(filmId);
+    }
+
+    public boolean containsUser(long userId) {
+        return userIds.contains(userId);
+    }
+
+    // Ответ на создание уходит после фиксации, поэтому клиент не увидит 404 для только что созданной записи
+    public void addFilm(long filmId) {
+        AfterCommit.run(() -> filmIds.add(filmId));
+    }
+
+    public void addUser(long userId) {
+        AfterCommit.run(() -> userIds.add(userId));
+    }
+
+    // Проверки читают текущее множество без блокировки. Добавления идут по одному под монитором множества,
+    // а загрузка сканирует таблицу без него и подменяет множество целиком
+    private static final class Ids {
+
+        private final Object loadLock = new Object();
+        private volatile PagedBitSet current = new PagedBitSet();
+        // id, добавленные во время загрузки: сканирование таблицы могло их не застать
+        private List<Long> addedDuringLoad;
+
+        boolean contains(long id) {
+            return current.contains(id);
+        }
+
+        synchronized void add(long id) {
+            current.add(id);
+            if (addedDuringLoad != null) {
+                addedDuringLoad.add(id);
+            }
+        }
+
+        PagedBitSet load(Consumer<LongConsumer> scan) {
+            synchronized (loadLock) {
+                synchronized (this) {
+                    addedDuringLoad = new ArrayList<>();
+                }
+                try {
+                    PagedBitSet ids = new PagedBitSet();
+                    scan.accept(ids::add);
+                    synchronized (this) {
+                        addedDuringLoad.forEach(ids::add);
+                        current = ids;
+                    }
+                    return ids;
+                } finally {
+                    synchronized (this) {
+                        addedDuringLoad = null;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Счетчики версий фильмов и пользователей, из которых строятся ETag. Счетчики живут только в памяти,
+// поэтому в тег входит эпоха, которая меняется при каждом запуске - теги прошлого запуска не совпадут
+@Slf4j
+@Component
+public class EntityVersions {
+
+    private static final String REFERENCE_DATA_VERSION = "ref";
+
+    // Версия хранится только для измененных записей, отсутствие записи означает версию 0
+    private LongIntHashMap filmVersions = new LongIntHashMap();
+    private LongIntHashMap userVersions = new LongIntHashMap();
+    private String epoch = newEpoch();
+
+    public synchronized String getFilmETag(long filmId) {
+        return eTag(String.valueOf(filmVersions.get(filmId)));
+    }
+
+    public synchronized String getUserETag(long userId) {
+        return eTag(String.valueOf(userVersions.get(userId)));
+    }
+
+    // Версию справочников ведет ReferenceDataCache: она растет при каждом их перечитывании
+    public synchronized String getReferenceDataETag(long referenceDataVersion) {
+        return eTag(REFERENCE_DATA_VERSION + referenceDataVersion);
+    }
+
+    // Версия меняется только после фиксации транзакции: иначе параллельное чтение успело бы получить новую версию
+    // вместе со старыми данными, и клиент кешировал бы их под тегом, который больше не изменится
+    public void bumpFilm(long filmId) {
+        AfterCommit.run(() -> bumpFilmNow(filmId));
+    }
+
+    public void bumpUser(long userId) {
+        AfterCommit.run(() -> bumpUserNow(userId));
+    }
+
+    // Вызывается после массовых изменений, когда перебирать записи по одной слишком дорого
+    public synchronized void invalidateAll() {
+        filmVersions = new LongIntHashMap();
+        userVersions = new LongIntHashMap();
+        epoch = newEpoch();
+        log.info("Версии фильмов и пользователей сброшены, новая эпоха ETag {}", epoch);
+    }
+
+    private synchronized void bumpFilmNow(long filmId) {
+        filmVersions.addTo(filmId, 1);
+    }
+
+    private synchronized void bumpUserNow(long userId) {
+        userVersions.addTo(userId, 1);
+    }
+
+    private String eTag(String version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    private static String newEpoch() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+}
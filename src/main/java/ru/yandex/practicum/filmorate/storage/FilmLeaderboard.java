@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Рейтинг ведется отдельно для каждой корзины (жанр, год), (жанр, любой год), (любой жанр, год) и для всех
+// фильмов сразу, поэтому выборка с фильтром стоит столько же, сколько без него
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmLeaderboard {
+
+    // Значение фильтра "любой жанр" или "любой год": id жанров начинаются с 1, фильмов до 1895 года нет
+    private static final int ANY = 0;
+    private static final long ALL_FILMS = bucket(ANY, ANY);
+
+    // Сначала фильмы с большим числом лайков, при равенстве - с меньшим id
+    private static final Comparator<Entry> RANKING_ORDER = Comparator
+            .<Entry>comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final FilmRepository filmRepository;
+
+    // Число лайков читается поиском для всех кандидатов разом, поэтому хранится без упаковки в объекты
+    private LongIntHashMap likeCounts = new LongIntHashMap();
+    // Год выпуска и жанры хранятся только для фильмов с лайками - остальные ни в одну корзину не входят
+    private final Map<Long, Categories> categories = new HashMap<>();
+    private final Map<Long, NavigableSet<Entry>> buckets = new HashMap<>();
+    // Растет при каждом изменении категорий фильма: год и жанры, прочитанные до изменения, уже устарели
+    private long categoryUpdates;
+
+    @PostConstruct
+    public synchronized void load() {
+        categoryUpdates++;
+        categories.clear();
+        buckets.clear();
+
+        Map<Long, Integer> releaseYears = new HashMap<>();
+        Map<Long, Set<Integer>> genreIds = new HashMap<>();
+        filmRepository.forEachLikedFilmReleaseYear(releaseYears::put);
+        filmRepository.forEachLikedFilmGenre((filmId, genreId) ->
+                genreIds.computeIfAbsent(filmId, id -> new HashSet<>()).add(genreId));
+
+        Map<Long, Integer> counts = filmRepository.getLikeCounts();
+        likeCounts = new LongIntHashMap(counts.size());
+        counts.forEach((filmId, likes) -> {
+            Integer releaseYear = releaseYears.get(filmId);
+            if (releaseYear == null) {
+                return;
+            }
+            Categories filmCategories = new Categories(releaseYear,
+                    toArray(genreIds.getOrDefault(filmId, Set.of())));
+            likeCounts.addTo(filmId, likes);
+            categories.put(filmId, filmCategories);
+            addToBuckets(filmCategories, new Entry(filmId, likes));
+        });
+        log.info("Рейтинг популярных фильмов загружен, фильмов с лайками: {}, корзин: {}",
+                likeCounts.size(), buckets.size());
+    }
+
+    // На первом лайке фильма год и жанры читаются из БД без блокировки, чтобы чтения рейтинга и поиск
+    // не ждали запросов. Если категории фильмов изменились во время чтения, оно повторяется
+    public void increment(long filmId) {
+        Categories loaded = null;
+        long stamp = 0;
+        while (true) {
+            synchronized (this) {
+                if (likeCounts.get(filmId) > 0) {
+                    changeLikes(filmId, 1, categories.get(filmId));
+                    return;
+                }
+                if (loaded != null && stamp == categoryUpdates) {
+                    changeLikes(filmId, 1, loaded);
+                    return;
+                }
+                stamp = categoryUpdates;
+            }
+            loaded = loadCategories(filmId);
+            if (loaded == null) {
+                return;
+            }
+        }
+    }
+
+    public synchronized void decrement(long filmId) {
+        if (likeCounts.get(filmId) > 0) {
+            changeLikes(filmId, -1, categories.get(filmId));
+        }
+    }
+
+    // Числа лайков первых count фильмов массива, в том же порядке
+    public synchronized int[] getLikes(long[] filmIds, int count) {
+        int[] likes = new int[count];
+        for (int i = 0; i < count; i++) {
+            likes[i] = likeCounts.get(filmIds[i]);
+        }
+        return likes;
+    }
+
+    public synchronized int getMaxLikes() {
+        NavigableSet<Entry> ranking = buckets.get(ALL_FILMS);
+        return ranking == null ? 0 : ranking.first().likes();
+    }
+
+    public synchronized List<Long> getTop(int count) {
+        return getTop(null, null, count);
+    }
+
+    // genreId и releaseYear равные null означают отсутствие фильтра
+    public synchronized List<Long> getTop(Integer genreId, Integer releaseYear, int count) {
+        NavigableSet<Entry> ranking = buckets.get(bucket(genreId == null ? ANY : genreId,
+                releaseYear == null ? ANY : releaseYear));
+        if (ranking == null) {
+            return List.of();
+        }
+        List<Long> filmIds = new ArrayList<>(Math.max(0, Math.min(count, ranking.size())));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (filmIds.size() < count && iterator.hasNext()) {
+            filmIds.add(iterator.next().filmId());
+        }
+        return filmIds;
+    }
+
+    // Вызывается после изменения года выпуска или жанров фильма, чтобы перенести его в новые корзины.
+    // Фильм переносится после фиксации транзакции: при откате он остается в прежних корзинах
+    public void updateCategories(long filmId, int releaseYear, Set<Integer> genreIds) {
+        AfterCommit.run(() -> updateCategoriesNow(filmId, releaseYear, genreIds));
+    }
+
+    private synchronized void updateCategoriesNow(long filmId, int releaseYear, Set<Integer> genreIds) {
+        categoryUpdates++;
+        Categories current = categories.get(filmId);
+        if (current == null) {
+            return;
+        }
+        Categories updated = new Categories(releaseYear, toArray(genreIds));
+        Entry entry = new Entry(filmId, likeCounts.get(filmId));
+        removeFromBuckets(current, entry);
+        categories.put(filmId, updated);
+        addToBuckets(updated, entry);
+    }
+
+    private void changeLikes(long filmId, int delta, Categories filmCategories) {
+        int current = likeCounts.get(filmId);
+        int updated = current + delta;
+        if (current <= 0 && updated <= 0) {
+            return;
+        }
+        if (current > 0) {
+            removeFromBuckets(filmCategories, new Entry(filmId, current));
+        }
+        if (updated > 0) {
+            likeCounts.addTo(filmId, delta);
+            categories.put(filmId, filmCategories);
+            addToBuckets(filmCategories, new Entry(filmId, updated));
+        } else {
+            likeCounts.remove(filmId);
+            categories.remove(filmId);
+        }
+    }
+
+    // Первый лайк фильма: год и жанры читаются из БД один раз, дальше фильм хранится в корзинах
+    private Categories loadCategories(long filmId) {
+        return filmRepository.getReleaseYear(filmId)
+                .map(releaseYear -> new Categories(releaseYear, toArray(filmRepository.getGenreIds(filmId))))
+                .orElse(null);
+    }
+
+    private void addToBuckets(Categories filmCategories, Entry entry) {
+        for (long key : filmCategories.buckets()) {
+            buckets.computeIfAbsent(key, k -> new TreeSet<>(RANKING_ORDER)).add(entry);
+        }
+    }
+
+    private void removeFromBuckets(Categories filmCategories, Entry entry) {
+        for (long key : filmCategories.buckets()) {
+            NavigableSet<Entry> ranking = buckets.get(key);
+            if (ranking != null && ranking.remove(entry) && ranking.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    private static long bucket(int genreId, int releaseYear) {
+        return ((long) genreId << 32) | (releaseYear & 0xFFFFFFFFL);
+    }
+
+    private static int[] toArray(Set<Integer> genreIds) {
+        return genreIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private record Categories(int releaseYear, int[] genreIds) {
+
+        private long[] buckets() {
+            long[] keys = new long[2 + genreIds.length * 2];
+            keys[0] = ALL_FILMS;
+            keys[1] = bucket(ANY, releaseYear);
+            for (int i = 0; i < genreIds.length; i++) {
+                keys[2 + i * 2] = bucket(genreIds[i], ANY);
+                keys[3 + i * 2] = bucket(genreIds[i], releaseYear);
+            }
+            return keys;
+        }
+    }
+
+    private record Entry(long filmId, int likes) {
+    }
+}
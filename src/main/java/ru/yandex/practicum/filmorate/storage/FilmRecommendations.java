@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class FilmRecommendations {
+
+    // Сколько пользователей с самыми похожими лайками учитывается при подборе фильмов
+    private static final int NEIGHBOURS = 10;
+
+    private final LikeIndex likeIndex;
+
+    // Фильмы, которые лайкнули пользователи с наибольшим пересечением лайков, но не лайкнул сам пользователь.
+    // Вклад соседа в оценку фильма равен размеру пересечения его лайков с лайками пользователя
+    public long[] recommend(long userId, int limit) {
+        long[] likedFilms = likeIndex.getLikedFilms(userId);
+        if (likedFilms.length == 0) {
+            return LongArrays.EMPTY;
+        }
+
+        LongIntHashMap overlaps = new LongIntHashMap(likedFilms.length * 16);
+        for (long filmId : likedFilms) {
+            for (long otherUserId : likeIndex.getLikers(filmId)) {
+                if (otherUserId != userId) {
+                    overlaps.addTo(otherUserId, 1);
+                }
+            }
+        }
+
+        LongTopK neighbours = new LongTopK(NEIGHBOURS);
+        overlaps.forEach(neighbours::offer);
+
+        LongIntHashMap filmScores = new LongIntHashMap();
+        for (long neighbourId : neighbours.toSortedArray()) {
+            int overlap = overlaps.get(neighbourId);
+            for (long filmId : likeIndex.getLikedFilms(neighbourId)) {
+                if (!LongArrays.contains(likedFilms, filmId)) {
+                    filmScores.addTo(filmId, overlap);
+                }
+            }
+        }
+
+        LongTopK recommendations = new LongTopK(limit);
+        filmScores.forEach(recommendations::offer);
+        return recommendations.toSortedArray();
+    }
+}
@@ -0,0 +1,384 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Инвертированный индекс по словам названия и описания фильмов. Слово запроса совпадает со словом фильма
+// целиком или как его начало, поэтому "кот" находит и "кот", и "котенок"
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    // Более короткие слова запроса ищутся только целиком, иначе одна буква совпадает почти со всеми фильмами
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_QUERY_TERMS = 10;
+    private static final int INITIAL_CANDIDATES = 1024;
+
+    // Вес совпадения по уровням в порядке перебора: слово названия целиком, начало слова названия,
+    // слово описания целиком, начало слова описания
+    private static final double[] MATCH_WEIGHTS = {3, 2, 1, 0.5};
+    private static final int NO_MATCH = -1;
+    // Вклад лайков логарифмический и слабее текстового: совпадение в названии важнее популярности
+    private static final double LIKES_WEIGHT = 0.1;
+
+    private final FilmRepository filmRepository;
+    private final FilmLeaderboard filmLeaderboard;
+
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    // Номера слов каждого фильма нужны, чтобы убрать его из индекса при изменении и проверить остальные слова
+    // запроса. Id фильмов выдаются подряд, поэтому массив по id плотный и проверка кандидата не ищет по хеш-таблице.
+    // Формат: число слов названия, номера слов названия, номера слов описания
+    private int[][] filmTerms = new int[0][];
+    private int indexedFilms;
+    // Слова индекса по номерам, которые хранятся в словах фильмов
+    private final List<Postings> postingsById = new ArrayList<>();
+    // Поиски только читают индекс и идут параллельно, изменения индекса их исключают
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            reload();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reload() {
+        terms.clear();
+        filmTerms = new int[0][];
+        indexedFilms = 0;
+        postingsById.clear();
+        // Фильмы читаются по возрастанию id, поэтому id в списки вхождений только дописываются в конец
+        filmRepository.streamAll(this::add);
+        log.info("Поисковый индекс фильмов загружен: фильмов {}, слов {}", indexedFilms, terms.size());
+    }
+
+    // Вызывается после создания или изменения фильма. При откате транзакции индекс не меняется
+    public void index(Film film) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                remove(film.getId());
+                add(film);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Возвращает id не больше limit фильмов, содержащих все слова запроса, от самых подходящих к менее подходящим
+    public List<Long> search(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return find(query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> find(String query, int limit) {
+        List<String> queryTerms = new ArrayList<>(tokenize(query));
+        if (queryTerms.size() > MAX_QUERY_TERMS) {
+            queryTerms = queryTerms.subList(0, MAX_QUERY_TERMS);
+        }
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        // Кандидатов дает самое редкое слово запроса, остальные слова проверяются по словам кандидата
+        String rarest = queryTerms.getFirst();
+        long rarestCount = Long.MAX_VALUE;
+        for (String term : queryTerms) {
+            long count = countMatches(term, rarestCount);
+            if (count < rarestCount) {
+                rarest = term;
+                rarestCount = count;
+            }
+        }
+        List<TermQuery> otherTerms = new ArrayList<>();
+        for (String term : queryTerms) {
+            if (!term.equals(rarest)) {
+                otherTerms.add(termQuery(term));
+            }
+        }
+
+        // Верхняя граница оценки кандидатов уровня: если даже она ниже худшего из отобранных,
+        // этот и следующие уровни можно не перебирать
+        double otherTermsBound = otherTerms.size() * MATCH_WEIGHTS[0];
+        double maxLikesFactor = likesFactor(filmLeaderboard.getMaxLikes());
+
+        LongTopK top = new LongTopK(limit);
+        int initialCandidates = (int) Math.min(rarestCount, INITIAL_CANDIDATES);
+        LongIntHashMap seen = new LongIntHashMap(initialCandidates);
+        long[] candidates = new long[initialCandidates];
+        double[] relevances = new double[initialCandidates];
+        Collection<Postings> matches = matchingPostings(rarest);
+        for (int level = 0; level < MATCH_WEIGHTS.length; level++) {
+            if (top.isFull() && (MATCH_WEIGHTS[level] + otherTermsBound) * maxLikesFactor < top.worstScore()) {
+                break;
+            }
+            int count = 0;
+            for (Postings postings : matches) {
+                PostingList list = postings.list(level, rarest);
+                for (int i = 0; list != null && i < list.size; i++) {
+                    long filmId = list.filmIds[i];
+                    if (seen.containsKey(filmId)) {
+                        continue;
+                    }
+                    // Уровни перебираются от лучшего к худшему, поэтому первое совпадение фильма - лучшее
+                    seen.addTo(filmId, 1);
+                    double relevance = relevance(filmId, MATCH_WEIGHTS[level], otherTerms);
+                    if (relevance > 0) {
+                        if (count == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, Math.max(1, count * 2));
+                            relevances = Arrays.copyOf(relevances, candidates.length);
+                        }
+                        candidates[count] = filmId;
+                        relevances[count++] = relevance;
+                    }
+                }
+            }
+            // Лайки всех подошедших кандидатов уровня читаются за одно обращение к рейтингу, а отбор лучших
+            // идет уже по итоговой оценке
+            int[] likes = filmLeaderboard.getLikes(candidates, count);
+            for (int i = 0; i < count; i++) {
+                top.offer(candidates[i], relevances[i] * likesFactor(likes[i]));
+            }
+        }
+        log.debug("По запросу '{}' проверено кандидатов: {}", query, seen.size());
+
+        List<Long> filmIds = new ArrayList<>(top.size());
+        for (long filmId : top.toSortedArray()) {
+            filmIds.add(filmId);
+        }
+        return filmIds;
+    }
+
+    // Приводит текст к словам индекса: нижний регистр, ё заменяется на е, разделители - все кроме букв и цифр
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                token.append(c == 'ё' ? 'е' : c);
+            } else if (!token.isEmpty()) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private void add(Film film) {
+        long filmId = film.getId();
+        Set<String> nameTokens = tokenize(film.getName());
+        Set<String> descriptionTokens = tokenize(film.getDescription());
+        int[] termIds = new int[1 + nameTokens.size() + descriptionTokens.size()];
+        termIds[0] = nameTokens.size();
+        addPostings(nameTokens, termIds, 1, postings -> postings.name.add(filmId));
+        addPostings(descriptionTokens, termIds, 1 + nameTokens.size(), postings -> postings.description.add(filmId));
+
+        int index = Math.toIntExact(filmId);
+        if (index >= filmTerms.length) {
+            filmTerms = Arrays.copyOf(filmTerms, Math.max(index + 1, filmTerms.length + filmTerms.length / 2));
+        }
+        filmTerms[index] = termIds;
+        indexedFilms++;
+    }
+
+    private void addPostings(Set<String> tokens, int[] termIds, int from, Consumer<Postings> adder) {
+        int i = from;
+        for (String token : tokens) {
+            Postings postings = terms.computeIfAbsent(token, term -> {
+                Postings created = new Postings(term, postingsById.size());
+                postingsById.add(created);
+                return created;
+            });
+            adder.accept(postings);
+            termIds[i++] = postings.id;
+        }
+    }
+
+    private void remove(long filmId) {
+        int[] termIds = filmId < filmTerms.length ? filmTerms[(int) filmId] : null;
+        if (termIds == null) {
+            return;
+        }
+        filmTerms[(int) filmId] = null;
+        indexedFilms--;
+        int nameEnd = 1 + termIds[0];
+        for (int i = 1; i < termIds.length; i++) {
+            boolean name = i < nameEnd;
+            removePosting(termIds[i], postings -> (name ? postings.name : postings.description).remove(filmId));
+        }
+    }
+
+    private void removePosting(int termId, Consumer<Postings> remover) {
+        Postings postings = postingsById.get(termId);
+        if (postings == null) {
+            return;
+        }
+        remover.accept(postings);
+        // Номер слова повторно не выдается, чтобы не путать его со старыми номерами в словах фильмов
+        if (postings.name.size == 0 && postings.description.size == 0) {
+            terms.remove(postings.term);
+            postingsById.set(termId, null);
+        }
+    }
+
+    // Число вхождений слова с учетом продолжений; подсчет прекращается, как только превышен limit
+    private long countMatches(String term, long limit) {
+        long count = 0;
+        for (Postings postings : matchingPostings(term)) {
+            count += postings.name.size + postings.description.size;
+            if (count >= limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    // Номера слов индекса, совпадающих со словом запроса целиком или как продолжение
+    private TermQuery termQuery(String term) {
+        int exactId = NO_MATCH;
+        BitSet prefixIds = new BitSet();
+        for (Postings postings : matchingPostings(term)) {
+            if (postings.term.length() == term.length()) {
+                exactId = postings.id;
+            } else {
+                prefixIds.set(postings.id);
+            }
+        }
+        return new TermQuery(exactId, prefixIds);
+    }
+
+    // Сумма весов совпадений всех слов запроса или 0, если какое-то из остальных слов в фильме не встречается
+    private double relevance(long filmId, double rarestWeight, List<TermQuery> otherTerms) {
+        if (otherTerms.isEmpty()) {
+            return rarestWeight;
+        }
+        int[] termIds = filmTerms[(int) filmId];
+        double relevance = rarestWeight;
+        for (TermQuery term : otherTerms) {
+            int level = term.match(termIds);
+            if (level == NO_MATCH) {
+                return 0;
+            }
+            relevance += MATCH_WEIGHTS[level];
+        }
+        return relevance;
+    }
+
+    private static double likesFactor(int likes) {
+        return 1 + LIKES_WEIGHT * Math.log1p(likes);
+    }
+
+    // Слово и все его продолжения. Само слово в TreeMap идет раньше продолжений, поэтому перебирается первым
+    private Collection<Postings> matchingPostings(String term) {
+        if (term.length() < MIN_PREFIX_LENGTH) {
+            Postings exact = terms.get(term);
+            return exact == null ? List.of() : List.of(exact);
+        }
+        return terms.subMap(term, true, term + Character.MAX_VALUE, false).values();
+    }
+
+    private static final class Postings {
+        private final String term;
+        private final int id;
+        private final PostingList name = new PostingList();
+        private final PostingList description = new PostingList();
+
+        private Postings(String term, int id) {
+            this.term = term;
+            this.id = id;
+        }
+
+        // Список вхождений, соответствующий уровню совпадения со словом запроса, или null, если уровень не тот
+        private PostingList list(int level, String queryTerm) {
+            boolean exact = term.length() == queryTerm.length();
+            if (exact != (level % 2 == 0)) {
+                return null;
+            }
+            return level < 2 ? name : description;
+        }
+    }
+
+    // Отсортированные по возрастанию id фильмов, в которых встречается слово
+    private static final class PostingList {
+        private long[] filmIds = LongArrays.EMPTY;
+        private int size;
+
+        private void add(long filmId) {
+            if (size > 0 && filmIds[size - 1] >= filmId) {
+                int index = Arrays.binarySearch(filmIds, 0, size, filmId);
+                if (index < 0) {
+                    insert(-index - 1, filmId);
+                }
+                return;
+            }
+            insert(size, filmId);
+        }
+
+        private void remove(long filmId) {
+            int index = Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (index >= 0) {
+                System.arraycopy(filmIds, index + 1, filmIds, index, size - index - 1);
+                size--;
+            }
+        }
+
+        private void insert(int index, long filmId) {
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, Math.max(1, size * 2));
+            }
+            System.arraycopy(filmIds, index, filmIds, index + 1, size - index);
+            filmIds[index] = filmId;
+            size++;
+        }
+    }
+
+    private record TermQuery(int exactId, BitSet prefixIds) {
+
+        // Лучший уровень совпадения слова запроса со словами фильма или NO_MATCH
+        private int match(int[] termIds) {
+            int nameEnd = 1 + termIds[0];
+            int level = NO_MATCH;
+            for (int i = 1; i < termIds.length; i++) {
+                int termLevel = termIds[i] == exactId ? 0 : prefixIds.get(termIds[i]) ? 1 : NO_MATCH;
+                if (termLevel == NO_MATCH) {
+                    continue;
+                }
+                termLevel += i < nameEnd ? 0 : 2;
+                if (level == NO_MATCH || termLevel < level) {
+                    level = termLevel;
+                }
+            }
+            return level;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendGraph {
+
+    private static final Adjacency EMPTY = new Adjacency(LongArrays.EMPTY, LongArrays.EMPTY, LongArrays.EMPTY);
+
+    private final UserRepository userRepository;
+
+    // Списки смежности неизменяемые и заменяются целиком, поэтому читатели работают без блокировок
+    private final Map<Long, Adjacency> adjacency = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public synchronized void load() {
+        // Запись (user_id, friend_id) в таблице friends означает, что friend_id добавил в друзья user_id
+        Map<Long, List<Long>> added = new HashMap<>();
+        userRepository.forEachFriendship((userId, friendId) ->
+                added.computeIfAbsent(friendId, id -> new ArrayList<>()).add(userId));
+
+        Map<Long, long[]> sortedAdded = new HashMap<>();
+        added.forEach((userId, friendIds) -> sortedAdded.put(userId,
+                LongArrays.sortedDistinct(friendIds.stream().mapToLong(Long::longValue).toArray())));
+
+        Map<Long, List<Long>> confirmed = new HashMap<>();
+        Map<Long, List<Long>> pending = new HashMap<>();
+        Map<Long, List<Long>> incoming = new HashMap<>();
+        sortedAdded.forEach((userId, friendIds) -> {
+            for (long friendId : friendIds) {
+                long[] reverse = sortedAdded.getOrDefault(friendId, LongArrays.EMPTY);
+                if (LongArrays.contains(reverse, userId)) {
+                    confirmed.computeIfAbsent(userId, id -> new ArrayList<>()).add(friendId);
+                } else {
+                    pending.computeIfAbsent(userId, id -> new ArrayList<>()).add(friendId);
+                    incoming.computeIfAbsent(friendId, id -> new ArrayList<>()).add(userId);
+                }
+            }
+        });
+
+        adjacency.clear();
+        Set<Long> userIds = new HashSet<>(sortedAdded.keySet());
+        userIds.addAll(incoming.keySet());
+        for (Long userId : userIds) {
+            adjacency.put(userId, new Adjacency(toSortedArray(confirmed.get(userId)),
+                    toSortedArray(pending.get(userId)), toSortedArray(incoming.get(userId))));
+        }
+        log.info("Граф дружбы загружен, пользователей с друзьями: {}", adjacency.size());
+    }
+
+    // userId добавляет в друзья friendId. Граф меняется после фиксации транзакции, чтобы откат не оставил
+    // в нем дружбу, которой нет в таблице friends
+    public void addFriend(long userId, long friendId) {
+        AfterCommit.run(() -> addFriendNow(userId, friendId));
+    }
+
+    // userId удаляет из друзей friendId
+    public void removeFriend(long userId, long friendId) {
+        AfterCommit.run(() -> removeFriendNow(userId, friendId));
+    }
+
+    private synchronized void addFriendNow(long userId, long friendId) {
+        Adjacency user = get(userId);
+        if (LongArrays.contains(user.confirmed(), friendId) || LongArrays.contains(user.pending(), friendId)) {
+            return;
+        }
+
+        Adjacency friend = get(friendId);
+        if (LongArrays.contains(user.incoming(), friendId)) {
+            // Встречная заявка уже есть - дружба становится подтвержденной у обоих
+            adjacency.put(userId, new Adjacency(LongArrays.insert(user.confirmed(), friendId),
+                    user.pending(), LongArrays.remove(user.incoming(), friendId)));
+            adjacency.put(friendId, new Adjacency(LongArrays.insert(friend.confirmed(), userId),
+                    LongArrays.remove(friend.pending(), userId), friend.incoming()));
+        } else {
+            adjacency.put(userId, new Adjacency(user.confirmed(),
+                    LongArrays.insert(user.pending(), friendId), user.incoming()));
+            adjacency.put(friendId, new Adjacency(friend.confirmed(),
+                    friend.pending(), LongArrays.insert(friend.incoming(), userId)));
+        }
+    }
+
+    private synchronized void removeFriendNow(long userId, long friendId) {
+        Adjacency user = get(userId);
+        Adjacency friend = get(friendId);
+        if (LongArrays.contains(user.confirmed(), friendId)) {
+            // У friendId остается его собственная заявка, которая снова становится неподтвержденной
+            adjacency.put(userId, new Adjacency(LongArrays.remove(user.confirmed(), friendId),
+                    user.pending(), LongArrays.insert(user.incoming(), friendId)));
+            adjacency.put(friendId, new Adjacency(LongArrays.remove(friend.confirmed(), userId),
+                    LongArrays.insert(friend.pending(), userId), friend.incoming()));
+        } else if (LongArrays.contains(user.pending(), friendId)) {
+            adjacency.put(userId, new Adjacency(user.confirmed(),
+                    LongArrays.remove(user.pending(), friendId), user.incoming()));
+            adjacency.put(friendId, new Adjacency(friend.confirmed(),
+                    friend.pending(), LongArrays.remove(friend.incoming(), userId)));
+        }
+    }
+
+    // Друзья пользователя - все, кого он добавил, независимо от подтверждения, по возрастанию id
+    public long[] getFriends(long userId) {
+        Adjacency user = get(userId);
+        return LongArrays.union(user.confirmed(), user.pending());
+    }
+
+    public long[] getMutualFriends(long userId, long otherUserId) {
+        return LongArrays.intersect(getFriends(userId), getFriends(otherUserId));
+    }
+
+    // Пользователи, у которых userId есть в друзьях, по возрастанию id
+    public long[] getFollowers(long userId) {
+        Adjacency user = get(userId);
+        return LongArrays.union(user.confirmed(), user.incoming());
+    }
+
+    private Adjacency get(long userId) {
+        return adjacency.getOrDefault(userId, EMPTY);
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        if (ids == null) {
+            return LongArrays.EMPTY;
+        }
+        return LongArrays.sortedDistinct(ids.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    // confirmed - взаимная дружба, pending - отправленные пользователем заявки без ответа,
+    // incoming - полученные пользователем заявки, на которые он еще не ответил
+    private record Adjacency(long[] confirmed, long[] pending, long[] incoming) {
+    }
+}
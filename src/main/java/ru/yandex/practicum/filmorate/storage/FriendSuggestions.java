@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendSuggestions {
+
+    private final FriendGraph friendGraph;
+
+    private final Map<Long, Suggestions> cache = new ConcurrentHashMap<>();
+    // Растет при каждой инвалидации: результат, посчитанный во время изменения графа, в кеш не попадает
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Кандидаты в друзья по убыванию числа общих друзей, при равенстве - по возрастанию id
+    public long[] getSuggestions(long userId, int limit) {
+        Suggestions cached = cache.get(userId);
+        if (cached != null && (cached.limit() >= limit || cached.userIds().length < cached.limit())) {
+            return Arrays.copyOf(cached.userIds(), Math.min(limit, cached.userIds().length));
+        }
+
+        long stamp = invalidations.get();
+        long[] suggestions = compute(userId, limit);
+        if (invalidations.get() == stamp) {
+            cache.put(userId, new Suggestions(limit, suggestions));
+        }
+        return suggestions;
+    }
+
+    // Вызывается после изменения дружбы между userId и friendId в FriendGraph. Кеш сбрасывается после фиксации
+    // вслед за графом: раньше пересчет успел бы закешировать рекомендации по старому графу
+    public void invalidate(long userId, long friendId) {
+        AfterCommit.run(() -> invalidateNow(userId, friendId));
+    }
+
+    private void invalidateNow(long userId, long friendId) {
+        invalidations.incrementAndGet();
+        for (long changedUserId : new long[]{userId, friendId}) {
+            cache.remove(changedUserId);
+            // Изменившийся список друзей влияет на рекомендации всех, у кого этот пользователь в друзьях
+            for (long followerId : friendGraph.getFollowers(changedUserId)) {
+                cache.remove(followerId);
+            }
+        }
+    }
+
+    // Вызывается после массового изменения дружбы, когда затронутых пользователей слишком много
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.clear();
+    }
+
+    private long[] compute(long userId, int limit) {
+        long[] friends = friendGraph.getFriends(userId);
+        LongIntHashMap mutualFriendCounts = new LongIntHashMap(friends.length * 8);
+        // Общий друг кандидата и пользователя - тот, кого добавили в друзья оба
+        for (long friendId : friends) {
+            for (long candidateId : friendGraph.getFollowers(friendId)) {
+                if (candidateId != userId && !LongArrays.contains(friends, candidateId)) {
+                    mutualFriendCounts.addTo(candidateId, 1);
+                }
+            }
+        }
+
+        LongTopK top = new LongTopK(limit);
+        mutualFriendCounts.forEach(top::offer);
+        log.debug("Для пользователя с id={} найдено {} кандидатов в друзья", userId, mutualFriendCounts.size());
+        return top.toSortedArray();
+    }
+
+    private record Suggestions(int limit, long[] userIds) {
+    }
+}
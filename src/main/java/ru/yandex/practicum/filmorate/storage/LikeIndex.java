@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeIndex {
+
+    private final FilmRepository filmRepository;
+
+    // Отсортированные массивы id заменяются целиком при изменении, поэтому читаются без блокировок
+    private final Map<Long, long[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> usersByFilm = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public synchronized void load() {
+        Map<Long, List<Long>> films = new HashMap<>();
+        Map<Long, List<Long>> users = new HashMap<>();
+        filmRepository.forEachLike((filmId, userId) -> {
+            films.computeIfAbsent(userId, id -> new ArrayList<>()).add(filmId);
+            users.computeIfAbsent(filmId, id -> new ArrayList<>()).add(userId);
+        });
+
+        filmsByUser.clear();
+        usersByFilm.clear();
+        films.forEach((userId, filmIds) -> filmsByUser.put(userId, toSortedArray(filmIds)));
+        users.forEach((filmId, userIds) -> usersByFilm.put(filmId, toSortedArray(userIds)));
+        log.info("Индекс лайков загружен: пользователей {}, фильмов {}", filmsByUser.size(), usersByFilm.size());
+    }
+
+    public synchronized boolean addLike(long filmId, long userId) {
+        long[] films = getLikedFilms(userId);
+        if (LongArrays.contains(films, filmId)) {
+            return false;
+        }
+        filmsByUser.put(userId, LongArrays.insert(films, filmId));
+        usersByFilm.put(filmId, LongArrays.insert(getLikers(filmId), userId));
+        return true;
+    }
+
+    public synchronized boolean removeLike(long filmId, long userId) {
+        long[] films = getLikedFilms(userId);
+        if (!LongArrays.contains(films, filmId)) {
+            return false;
+        }
+        filmsByUser.put(userId, LongArrays.remove(films, filmId));
+        usersByFilm.put(filmId, LongArrays.remove(getLikers(filmId), userId));
+        return true;
+    }
+
+    public boolean hasLike(long filmId, long userId) {
+        return LongArrays.contains(getLikedFilms(userId), filmId);
+    }
+
+    public long[] getLikedFilms(long userId) {
+        return filmsByUser.getOrDefault(userId, LongArrays.EMPTY);
+    }
+
+    public long[] getLikers(long filmId) {
+        return usersByFilm.getOrDefault(filmId, LongArrays.EMPTY);
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        return LongArrays.sortedDistinct(ids.stream().mapToLong(Long::longValue).toArray());
+    }
+}
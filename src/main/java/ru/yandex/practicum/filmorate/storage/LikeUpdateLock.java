@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Перечитывание индексов лайков из БД исключает одновременные лайки. Иначе лайк, попавший в БД до чтения,
+// а в индексы после него, был бы посчитан дважды. Сами лайки друг друга не блокируют
+@Component
+public class LikeUpdateLock {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Запись лайка в БД вместе с обновлением индексов
+    public void update(Runnable update) {
+        lock.readLock().lock();
+        try {
+            update.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void reload(Runnable reload) {
+        lock.writeLock().lock();
+        try {
+            reload.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
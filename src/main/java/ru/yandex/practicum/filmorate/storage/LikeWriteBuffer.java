@@ -0,0 +1,362 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Отложенная запись лайков. Лайк сразу попадает в индекс лайков и в журнал на диске, а в таблицу likes уходит
+// пакетом по расписанию. До записи в БД изменения одной пары фильм-пользователь схлопываются в одно, лайк
+// с последующей отменой не доходят до БД вовсе. Журнал переигрывается при запуске, поэтому после падения
+// процесса лайки не теряются. Строки журнала, которые не удается записать в БД, откладываются в файл
+// <журнал>.rejected и не мешают запуску
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeWriteBuffer {
+
+    private static final char LIKE = 'L';
+    private static final char UNLIKE = 'U';
+    private static final Comparator<Object[]> LIKE_KEY_ORDER = Comparator
+            .<Object[]>comparingLong(row -> (long) row[0])
+            .thenComparingLong(row -> (long) row[1]);
+
+    private final FilmRepository filmRepository;
+    private final LikeIndex likeIndex;
+    private final FilmLeaderboard filmLeaderboard;
+    private final TrendingFilms trendingFilms;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityIds entityIds;
+
+    @Value("${filmorate.likes.write-behind.enabled:false}")
+    private boolean enabled;
+    @Value("${filmorate.likes.write-behind.journal:./db/likes.journal}")
+    private String journalPath;
+    @Value("${filmorate.likes.write-behind.batch-size:1000}")
+    private int batchSize;
+    // Без fsync журнал переживает падение процесса, но не отключение питания
+    @Value("${filmorate.likes.write-behind.fsync:false}")
+    private boolean fsync;
+
+    // Изменения, еще не записанные в БД. Сброс забирает карту целиком и подставляет новую
+    private Map<LikeKey, PendingLike> pending = new HashMap<>();
+    // Пакет, который сейчас пишется в БД: его лайков в таблице может еще не быть
+    private Map<LikeKey, PendingLike> flushing = Map.of();
+    private FileChannel journal;
+    private final Object flushLock = new Object();
+
+    @PostConstruct
+    public synchronized void start() {
+        Path path = Path.of(journalPath);
+        if (!enabled) {
+            if (path.toFile().length() > 0) {
+                log.warn("Отложенная запись лайков выключена, журнал {} не переигрывается", path);
+            }
+            return;
+        }
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            if (Files.exists(path)) {
+                replay(path);
+            }
+            journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал лайков " + path, e);
+        }
+        log.info("Отложенная запись лайков включена, журнал {}", path);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Возвращает false, если лайк уже стоит
+    public synchronized boolean addLike(long filmId, long userId, Instant likedAt) {
+        if (likeIndex.hasLike(filmId, userId)) {
+            return false;
+        }
+        append(LIKE + " " + filmId + " " + userId + " " + likedAt.toEpochMilli() + "\n");
+        likeIndex.addLike(filmId, userId);
+        LikeKey key = new LikeKey(filmId, userId);
+        PendingLike previous = pending.get(key);
+        pending.put(key, new PendingLike(likedAt, previous != null && previous.stored()));
+        return true;
+    }
+
+    // Возвращает время удаленного лайка или пустой Optional, если лайка не было
+    public Optional<Instant> removeLike(long filmId, long userId) {
+        // Время из БД читается до захвата монитора, чтобы остальные лайки и отмены не ждали запроса
+        Optional<Instant> storedLikedAt = filmRepository.getLikeTime(filmId, userId);
+        synchronized (this) {
+            if (!likeIndex.hasLike(filmId, userId)) {
+                return Optional.empty();
+            }
+            LikeKey key = new LikeKey(filmId, userId);
+            PendingLike previous = pending.get(key);
+            Instant likedAt = getLikeTime(key, previous, storedLikedAt);
+            append(UNLIKE + " " + filmId + " " + userId + "\n");
+            likeIndex.removeLike(filmId, userId);
+            if (previous != null && !previous.stored()) {
+                pending.remove(key);
+            } else {
+                pending.put(key, new PendingLike(null, true));
+            }
+            return Optional.of(likedAt);
+        }
+    }
+
+    private Instant getLikeTime(LikeKey key, PendingLike previous, Optional<Instant> storedLikedAt) {
+        if (previous != null) {
+            return previous.likedAt();
+        }
+        PendingLike inFlight = flushing.get(key);
+        if (inFlight != null && inFlight.likedAt() != null) {
+            return inFlight.likedAt();
+        }
+        // Лайк мог попасть в БД сбросом, завершившимся после чтения: тогда он перечитывается уже под монитором
+        return storedLikedAt.or(() -> filmRepository.getLikeTime(key.filmId(), key.userId()))
+                .orElseThrow(() -> new InternalServerException("Лайк фильму с id=" + key.filmId()
+                        + " от пользователя с id=" + key.userId() + " не найден в БД"));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval:PT1S}",
+            initialDelayString = "${filmorate.likes.write-behind.flush-interval:PT1S}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        // Сбросы идут по одному, иначе более старый пакет мог бы записаться в БД позже более нового
+        synchronized (flushLock) {
+            Map<LikeKey, PendingLike> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                flushing = batch;
+                pending = new HashMap<>();
+            }
+
+            try {
+                write(batch);
+            } catch (DataAccessException e) {
+                log.warn("Не удалось записать в БД {} изменений лайков, повтор при следующем сбросе: {}",
+                        batch.size(), e.getMostSpecificCause().getMessage());
+                synchronized (this) {
+                    restore(batch);
+                    flushing = Map.of();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                flushing = Map.of();
+                compactJournal();
+            }
+            log.debug("В БД записано изменений лайков: {}", batch.size());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        synchronized (this) {
+            journal.close();
+        }
+    }
+
+    private void write(Map<LikeKey, PendingLike> batch) {
+        List<Object[]> addedLikes = new ArrayList<>();
+        List<Object[]> removedLikes = new ArrayList<>();
+        batch.forEach((key, like) -> {
+            if (like.likedAt() != null) {
+                addedLikes.add(new Object[]{key.filmId(), key.userId(), Timestamp.from(like.likedAt())});
+            } else {
+                removedLikes.add(new Object[]{key.filmId(), key.userId()});
+            }
+        });
+        // Отсортированные по ключу строки ложатся в соседние страницы индекса
+        addedLikes.sort(LIKE_KEY_ORDER);
+        removedLikes.sort(LIKE_KEY_ORDER);
+        transactionTemplate.executeWithoutResult(status ->
+                filmRepository.writeLikes(addedLikes, removedLikes, batchSize));
+    }
+
+    // Незаписанный пакет возвращается в буфер. Изменения, пришедшие после него, новее и остаются в силе
+    private void restore(Map<LikeKey, PendingLike> batch) {
+        batch.forEach((key, older) -> {
+            PendingLike newer = pending.get(key);
+            if (newer == null) {
+                pending.put(key, older);
+            } else if (newer.likedAt() == null && !older.stored()) {
+                pending.remove(key);
+            } else {
+                pending.put(key, new PendingLike(newer.likedAt(), older.stored()));
+            }
+        });
+    }
+
+    // После записи пакета в БД журнал заменяется снимком еще не записанных изменений, чтобы он не рос бесконечно
+    private void compactJournal() {
+        Path path = Path.of(journalPath);
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        StringBuilder snapshot = new StringBuilder();
+        pending.forEach((key, like) -> snapshot.append(toRecord(key, like)));
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(snapshot.toString().getBytes(StandardCharsets.US_ASCII)));
+            channel.force(false);
+        } catch (IOException e) {
+            // Старый журнал по-прежнему полон, поэтому достаточно попробовать еще раз при следующем сбросе
+            log.warn("Не удалось сжать журнал лайков {}: {}", path, e.getMessage());
+            return;
+        }
+        // Пакет уже записан в БД, поэтому ошибка замены журнала не делает сброс неудачным: лайки дописываются
+        // в старый журнал, а при запуске уже записанные изменения переиграются повторно без вреда
+        try {
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Не удалось заменить журнал лайков {}: {}", path, e.getMessage());
+            return;
+        }
+        try {
+            journal.close();
+            journal = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // Следующая запись в журнал попробует открыть его снова
+            log.error("Не удалось открыть замененный журнал лайков {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void append(String record) {
+        try {
+            if (!journal.isOpen()) {
+                journal = FileChannel.open(Path.of(journalPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            journal.write(ByteBuffer.wrap(record.getBytes(StandardCharsets.US_ASCII)));
+            if (fsync) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось записать лайк в журнал: " + e.getMessage());
+        }
+    }
+
+    // Журнал содержит изменения по порядку, поэтому для каждой пары фильм-пользователь действует последнее
+    private void replay(Path path) throws IOException {
+        Map<LikeKey, PendingLike> replayed = new HashMap<>();
+        int lineNumber = 0;
+        // ISO-8859-1 читает любые байты, поэтому мусор в журнале не прерывает чтение, а отбрасывается разбором строки
+        for (String line : Files.readAllLines(path, StandardCharsets.ISO_8859_1)) {
+            lineNumber++;
+            String[] fields = line.split(" ");
+            try {
+                LikeKey key = new LikeKey(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                if (line.charAt(0) == LIKE) {
+                    replayed.put(key, new PendingLike(Instant.ofEpochMilli(Long.parseLong(fields[3])), true));
+                } else if (line.charAt(0) == UNLIKE) {
+                    replayed.put(key, new PendingLike(null, true));
+                } else {
+                    throw new IllegalArgumentException("неизвестная операция");
+                }
+            } catch (RuntimeException e) {
+                // Последняя строка могла записаться не целиком, если процесс упал во время записи
+                log.warn("Строка {} журнала лайков пропущена: '{}'", lineNumber, line);
+            }
+        }
+
+        // schema.sql пересоздает таблицы при запуске, поэтому журнал может ссылаться на фильмы и пользователей,
+        // которых в БД больше нет. Такие строки нарушили бы внешний ключ и не дали бы записать остальные
+        Map<LikeKey, PendingLike> orphaned = new HashMap<>();
+        replayed.entrySet().removeIf(entry -> {
+            LikeKey key = entry.getKey();
+            if (entityIds.containsFilm(key.filmId()) && entityIds.containsUser(key.userId())) {
+                return false;
+            }
+            orphaned.put(key, entry.getValue());
+            return true;
+        });
+        if (!orphaned.isEmpty()) {
+            log.warn("В журнале лайков {} изменений для несуществующих фильмов или пользователей",
+                    orphaned.size());
+            reject(path, orphaned);
+        }
+        if (replayed.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(replayed);
+        } catch (DataAccessException e) {
+            log.error("Не удалось записать в БД {} изменений из журнала лайков: {}",
+                    replayed.size(), e.getMostSpecificCause().getMessage());
+            reject(path, replayed);
+            return;
+        }
+        // Индексы загружены из БД до переигрывания журнала, поэтому перечитываются
+        filmLeaderboard.load();
+        likeIndex.load();
+        trendingFilms.load();
+        log.info("Из журнала лайков {} восстановлено изменений: {}", path, replayed.size());
+    }
+
+    // Отложенные строки дописываются в формате журнала: после исправления данных их можно вернуть в журнал вручную
+    private void reject(Path path, Map<LikeKey, PendingLike> likes) {
+        Path rejected = path.resolveSibling(path.getFileName() + ".rejected");
+        StringBuilder records = new StringBuilder();
+        likes.forEach((key, like) -> records.append(toRecord(key, like)));
+        try {
+            Files.writeString(rejected, records, StandardCharsets.US_ASCII,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.warn("Изменения лайков ({}) отложены в {}", likes.size(), rejected);
+        } catch (IOException e) {
+            log.error("Не удалось сохранить в {} изменения лайков, они потеряны: {}", rejected, e.getMessage());
+        }
+    }
+
+    private static String toRecord(LikeKey key, PendingLike like) {
+        return like.likedAt() != null
+                ? LIKE + " " + key.filmId() + " " + key.userId() + " " + like.likedAt().toEpochMilli() + "\n"
+                : UNLIKE + " " + key.filmId() + " " + key.userId() + "\n";
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    // likedAt равный null означает удаленный лайк. stored - есть ли строка в таблице likes на момент
+    // последней записи: лайк, которого в БД еще нет, при отмене просто удаляется из буфера
+    private record PendingLike(Instant likedAt, boolean stored) {
+    }
+}
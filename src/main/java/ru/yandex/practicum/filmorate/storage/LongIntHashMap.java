@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+// Хеш-таблица с открытой адресацией long -> int без упаковки ключей и значений в объекты. Не потокобезопасна
+public class LongIntHashMap {
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+    }
+
+    public int get(long key) {
+        int index = indexOf(key);
+        return keys[index] == key ? values[index] : 0;
+    }
+
+    public boolean containsKey(long key) {
+        return keys[indexOf(key)] == key;
+    }
+
+    public int addTo(long key, int delta) {
+        int index = indexOf(key);
+        if (keys[index] == key) {
+            values[index] += delta;
+            return values[index];
+        }
+        keys[index] = key;
+        values[index] = delta;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        return delta;
+    }
+
+    public void remove(long key) {
+        int index = indexOf(key);
+        if (keys[index] != key) {
+            return;
+        }
+        // Сдвигаем назад следующие ключи той же цепочки, чтобы поиск не останавливался на образовавшейся дыре
+        int mask = keys.length - 1;
+        int next = (index + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            int home = slotOf(keys[next]);
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[index] = EMPTY_KEY;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = slotOf(key);
+        while (keys[index] != EMPTY_KEY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private int slotOf(long key) {
+        return Long.hashCode(key * 0x9E3779B97F4A7C15L) & (keys.length - 1);
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY_KEY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage;
+
+// Ограниченная куча для отбора k лучших id по оценке: больше оценка - выше место, при равенстве выше меньший id.
+// В корне кучи хранится худший из отобранных, поэтому отбор из n кандидатов стоит O(n log k)
+public class LongTopK {
+
+    private final int capacity;
+    private final long[] ids;
+    private final double[] scores;
+    private int size;
+
+    public LongTopK(int capacity) {
+        this.capacity = capacity;
+        this.ids = new long[capacity];
+        this.scores = new double[capacity];
+    }
+
+    public void offer(long id, double score) {
+        if (capacity == 0) {
+            return;
+        }
+        if (size < capacity) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isBetter(id, score, 0)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    // Оценка худшего из отобранных: кандидат с меньшей оценкой в отбор уже не попадет
+    public double worstScore() {
+        return scores[0];
+    }
+
+    // Возвращает отобранные id от лучшего к худшему. Куча после вызова пуста
+    public long[] toSortedArray() {
+        long[] result = new long[size];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = ids[0];
+            size--;
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private boolean isBetter(long id, double score, int index) {
+        return score > scores[index] || (score == scores[index] && id < ids[index]);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBetter(ids[parent], scores[parent], index)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && isBetter(ids[worst], scores[worst], left)) {
+                worst = left;
+            }
+            if (right < size && isBetter(ids[worst], scores[worst], right)) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int first, int second) {
+        long id = ids[first];
+        ids[first] = ids[second];
+        ids[second] = id;
+        double score = scores[first];
+        scores[first] = scores[second];
+        scores[second] = score;
+    }
+}
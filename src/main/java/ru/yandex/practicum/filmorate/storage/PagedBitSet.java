@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Множество неотрицательных long в виде битовых страниц по 65536 значений (8 КБ). Страница заводится при первом
+// значении из ее диапазона, а страницы хранятся отсортированными по номеру: плотные id из последовательности
+// занимают бит на id, а пропуски в нумерации не требуют памяти. Каждое одиночное значение вдали от остальных
+// обходится в целую страницу, поэтому структура рассчитана на id из последовательности БД.
+// Добавлять значения может только один поток за раз, а читать можно без блокировки: таблица страниц заменяется
+// целиком при добавлении страницы, а слова страниц читаются и пишутся как элементы AtomicLongArray.
+// Удаления нет: фильмы и пользователи не удаляются, а массовый импорт строит множество заново
+public class PagedBitSet {
+
+    private static final int PAGE_BITS = 16;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_BITS) / Long.SIZE;
+
+    private volatile PageTable table = new PageTable(new long[0], new AtomicLongArray[0]);
+    private long size;
+
+    public boolean contains(long value) {
+        if (value < 0) {
+            return false;
+        }
+        PageTable current = table;
+        int index = Arrays.binarySearch(current.keys(), value >>> PAGE_BITS);
+        return index >= 0 && (current.pages()[index].get(wordOf(value)) & (1L << value)) != 0;
+    }
+
+    // Возвращает false, если значение уже было в множестве
+    public boolean add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Значение должно быть неотрицательным: " + value);
+        }
+        AtomicLongArray page = getOrCreatePage(value >>> PAGE_BITS);
+        int word = wordOf(value);
+        long bits = page.get(word);
+        long mask = 1L << value;
+        if ((bits & mask) != 0) {
+            return false;
+        }
+        page.set(word, bits | mask);
+        size++;
+        return true;
+    }
+
+    // Читается пишущим потоком
+    public long size() {
+        return size;
+    }
+
+    // Объем страниц в байтах, без учета таблицы страниц
+    public long pageBytes() {
+        return (long) table.keys().length * WORDS_PER_PAGE * Long.BYTES;
+    }
+
+    private AtomicLongArray getOrCreatePage(long key) {
+        PageTable current = table;
+        int index = Arrays.binarySearch(current.keys(), key);
+        if (index >= 0) {
+            return current.pages()[index];
+        }
+        // Новая страница появляется раз на 65536 id, поэтому копирование таблицы страниц обходится дешево
+        index = -index - 1;
+        int count = current.keys().length;
+        long[] keys = new long[count + 1];
+        AtomicLongArray[] pages = new AtomicLongArray[count + 1];
+        System.arraycopy(current.keys(), 0, keys, 0, index);
+        System.arraycopy(current.pages(), 0, pages, 0, index);
+        System.arraycopy(current.keys(), index, keys, index + 1, count - index);
+        System.arraycopy(current.pages(), index, pages, index + 1, count - index);
+        keys[index] = key;
+        pages[index] = new AtomicLongArray(WORDS_PER_PAGE);
+        table = new PageTable(keys, pages);
+        return pages[index];
+    }
+
+    private static int wordOf(long value) {
+        return (int) (value >>> 6) & (WORDS_PER_PAGE - 1);
+    }
+
+    private record PageTable(long[] keys, AtomicLongArray[] pages) {
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.GenreRepository;
+import ru.yandex.practicum.filmorate.dal.MpaRepository;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+
+    private final GenreRepository genreRepository;
+    private final MpaRepository mpaRepository;
+
+    // Снимок неизменяемый и заменяется целиком, поэтому читать его можно без блокировок
+    private volatile Snapshot snapshot = new Snapshot(0, List.of(), new Genre[0], List.of(), new Mpa[0]);
+
+    // Версия растет при каждом перечитывании и входит в ETag справочников
+    @PostConstruct
+    public synchronized void refresh() {
+        List<Genre> genres = genreRepository.getAllGenres()
+                .stream()
+                .sorted(Comparator.comparing(Genre::getId))
+                .toList();
+        List<Mpa> mpaRatings = mpaRepository.getAllMpaRatings()
+                .stream()
+                .sorted(Comparator.comparing(Mpa::getId))
+                .toList();
+
+        Genre[] genresById = new Genre[genres.isEmpty() ? 0 : genres.getLast().getId() + 1];
+        genres.forEach(genre -> genresById[genre.getId()] = genre);
+        Mpa[] mpaById = new Mpa[mpaRatings.isEmpty() ? 0 : mpaRatings.getLast().getId() + 1];
+        mpaRatings.forEach(mpa -> mpaById[mpa.getId()] = mpa);
+
+        snapshot = new Snapshot(snapshot.version() + 1, genres, genresById, mpaRatings, mpaById);
+        log.info("Загружены справочники: жанров {}, рейтингов mpa {}", genres.size(), mpaRatings.size());
+    }
+
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    public List<Genre> getAllGenres() {
+        return snapshot.genres();
+    }
+
+    public Optional<Genre> getGenreById(int genreId) {
+        Genre[] genresById = snapshot.genresById();
+        if (genreId < 0 || genreId >= genresById.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(genresById[genreId]);
+    }
+
+    public List<Mpa> getAllMpaRatings() {
+        return snapshot.mpaRatings();
+    }
+
+    public Optional<Mpa> getMpaRatingById(int mpaId) {
+        Mpa[] mpaById = snapshot.mpaById();
+        if (mpaId < 0 || mpaId >= mpaById.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(mpaById[mpaId]);
+    }
+
+    private record Snapshot(long version, List<Genre> genres, Genre[] genresById, List<Mpa> mpaRatings, Mpa[] mpaById) {
+    }
+}
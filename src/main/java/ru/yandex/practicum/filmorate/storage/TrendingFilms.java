@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+// Рейтинг фильмов по лайкам с экспоненциальным затуханием: за каждое окно вклад лайка уменьшается вдвое.
+// Вес лайка считается от опорного момента landmark и со временем не меняется, поэтому порядок фильмов
+// меняется только при новых и удаленных лайках. Опорный момент периодически сдвигается к текущему времени
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrendingFilms {
+
+    // Лайки, вес которых упал ниже этой доли от веса нового лайка, на рейтинг уже не влияют и отбрасываются
+    private static final double MIN_WEIGHT = 1e-6;
+    // За столько окон вес лайка падает ниже MIN_WEIGHT, более старые лайки при загрузке не читаются
+    private static final int HORIZON_WINDOWS = 20;
+    // Запас до переполнения double: exp(709) - предел, до него опорный момент сдвигается принудительно
+    private static final double MAX_EXPONENT = 300;
+
+    private static final Comparator<Entry> RANKING_ORDER = Comparator
+            .comparingDouble(Entry::score).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final FilmRepository filmRepository;
+
+    @Value("${filmorate.trending.windows:1h,1d,7d,30d}")
+    private List<Duration> windows;
+
+    private final Map<Duration, DecayingRanking> rankings = new LinkedHashMap<>();
+
+    @PostConstruct
+    public synchronized void load() {
+        long now = System.currentTimeMillis();
+        rankings.clear();
+        windows.forEach(window -> rankings.put(window, new DecayingRanking(window, now)));
+
+        Duration longest = Collections.max(windows);
+        Instant since = Instant.ofEpochMilli(now).minus(longest.multipliedBy(HORIZON_WINDOWS));
+        filmRepository.forEachLikeSince(since, (filmId, likedAt) -> rankings.values()
+                .forEach(ranking -> ranking.change(filmId, likedAt.toEpochMilli(), 1, now)));
+        log.info("Рейтинг трендов загружен для окон {}, фильмов с лайками: {}", windows,
+                rankings.get(longest).scores.size());
+    }
+
+    public List<Duration> getWindows() {
+        return List.copyOf(windows);
+    }
+
+    public synchronized void addLike(long filmId, Instant likedAt) {
+        long now = System.currentTimeMillis();
+        rankings.values().forEach(ranking -> ranking.change(filmId, likedAt.toEpochMilli(), 1, now));
+    }
+
+    public synchronized void removeLike(long filmId, Instant likedAt) {
+        long now = System.currentTimeMillis();
+        rankings.values().forEach(ranking -> ranking.change(filmId, likedAt.toEpochMilli(), -1, now));
+    }
+
+    public synchronized List<Long> getTop(Duration window, int count) {
+        DecayingRanking ranking = rankings.get(window);
+        List<Long> filmIds = new ArrayList<>(Math.max(0, Math.min(count, ranking.ranking.size())));
+        Iterator<Entry> iterator = ranking.ranking.iterator();
+        while (filmIds.size() < count && iterator.hasNext()) {
+            filmIds.add(iterator.next().filmId());
+        }
+        return filmIds;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.trending.rescale-interval:PT1H}",
+            initialDelayString = "${filmorate.trending.rescale-interval:PT1H}")
+    public synchronized void rescale() {
+        long now = System.currentTimeMillis();
+        rankings.values().forEach(ranking -> ranking.rescale(now));
+        log.debug("Рейтинг трендов перемасштабирован, фильмов с лайками: {}",
+                rankings.values().stream().mapToInt(ranking -> ranking.scores.size()).max().orElse(0));
+    }
+
+    private static final class DecayingRanking {
+        // Скорость затухания в 1/мс: вес exp(-decayRate * t) уменьшается вдвое за окно
+        private final double decayRate;
+        private long landmark;
+        private final Map<Long, Double> scores = new HashMap<>();
+        private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING_ORDER);
+
+        private DecayingRanking(Duration window, long now) {
+            this.decayRate = Math.log(2) / window.toMillis();
+            this.landmark = now;
+        }
+
+        private void change(long filmId, long likedAt, int sign, long now) {
+            if (decayRate * (now - landmark) > MAX_EXPONENT) {
+                rescale(now);
+            }
+            double weight = Math.exp(decayRate * (likedAt - landmark));
+            double current = scores.getOrDefault(filmId, 0.0);
+            double updated = current + sign * weight;
+            if (current > 0) {
+                ranking.remove(new Entry(filmId, current));
+            }
+            // Сравнение с порогом, а не с нулем: после удаления всех лайков от суммы остается ошибка округления
+            if (updated > MIN_WEIGHT * Math.exp(decayRate * (now - landmark))) {
+                scores.put(filmId, updated);
+                ranking.add(new Entry(filmId, updated));
+            } else {
+                scores.remove(filmId);
+            }
+        }
+
+        // Переносит опорный момент на now: все веса умножаются на один множитель, поэтому порядок не меняется
+        private void rescale(long now) {
+            double factor = Math.exp(-decayRate * (now - landmark));
+            landmark = now;
+            Map<Long, Double> rescaled = new HashMap<>();
+            scores.forEach((filmId, score) -> {
+                if (score * factor > MIN_WEIGHT) {
+                    rescaled.put(filmId, score * factor);
+                }
+            });
+            scores.clear();
+            ranking.clear();
+            rescaled.forEach((filmId, score) -> {
+                scores.put(filmId, score);
+                ranking.add(new Entry(filmId, score));
+            });
+        }
+    }
+
+    private record Entry(long filmId, double score) {
+    }
+}
@@ -43,11 +43,13 @@ CREATE TABLE IF NOT EXISTS users(
 CREATE TABLE IF NOT EXISTS friends(
 	user_id bigint REFERENCES users(user_id) ON UPDATE RESTRICT ON DELETE CASCADE,
 	friend_id bigint REFERENCES users(user_id) ON UPDATE RESTRICT ON DELETE CASCADE,
-	friendship_status bool
+	friendship_status bool,
+	CONSTRAINT uq_friends UNIQUE(user_id, friend_id)
 );
 
 CREATE TABLE IF NOT EXISTS likes(
 	film_id bigint REFERENCES films(film_id) ON UPDATE RESTRICT ON DELETE CASCADE,
 	user_id bigint REFERENCES users(user_id) ON UPDATE RESTRICT ON DELETE CASCADE,
+	created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
 	CONSTRAINT uq_likes UNIQUE(film_id, user_id)
 );
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.FilmRecommendations;
+import ru.yandex.practicum.filmorate.storage.LikeIndex;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Рекомендации на синтетическом наборе лайков: популярность фильмов распределена неравномерно,
+// чтобы у популярных фильмов были длинные списки лайкнувших
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmRecommendationsBenchmark {
+
+    @Param({"100000"})
+    private int users;
+
+    @Param({"10000"})
+    private int films;
+
+    @Param({"10"})
+    private int likesPerUser;
+
+    private FilmRecommendations recommendations;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LikeIndex likeIndex = new LikeIndex(null);
+        SplittableRandom seed = new SplittableRandom(42);
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < likesPerUser; i++) {
+                // Квадрат равномерной величины смещает выбор к фильмам с меньшими id
+                double skewed = seed.nextDouble() * seed.nextDouble();
+                likeIndex.addLike(1 + (long) (skewed * films), userId);
+            }
+        }
+        recommendations = new FilmRecommendations(likeIndex);
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public long[] recommend() {
+        return recommendations.recommend(1 + random.nextInt(users), 10);
+    }
+}
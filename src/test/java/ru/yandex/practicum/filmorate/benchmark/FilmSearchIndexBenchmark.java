@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Поиск по индексу без БД на синтетическом каталоге. Частоты слов убывают по закону Ципфа,
+// поэтому частые слова дают сотни тысяч кандидатов, а редкие - единицы
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmSearchIndexBenchmark {
+
+    private static final int DESCRIPTION_WORDS = 12;
+
+    @Param({"200000"})
+    private int films;
+
+    @Param({"20000"})
+    private int vocabulary;
+
+    private String[] words;
+    private FilmSearchIndex index;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom seed = new SplittableRandom(42);
+        words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 3 + seed.nextInt(7); length > 0; length--) {
+                word.append((char) ('а' + seed.nextInt(32)));
+            }
+            words[i] = word.toString();
+        }
+
+        index = new FilmSearchIndex(null, new FilmLeaderboard(null));
+        for (long filmId = 1; filmId <= films; filmId++) {
+            Film film = new Film();
+            film.setId(filmId);
+            film.setName(randomWord(seed) + " " + randomWord(seed));
+            StringBuilder description = new StringBuilder();
+            for (int i = 0; i < DESCRIPTION_WORDS; i++) {
+                description.append(randomWord(seed)).append(' ');
+            }
+            film.setDescription(description.toString());
+            index.index(film);
+        }
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public List<Long> searchWord() {
+        return index.search(randomWord(random), 10);
+    }
+
+    @Benchmark
+    public List<Long> searchTwoWords() {
+        return index.search(randomWord(random) + " " + randomWord(random), 10);
+    }
+
+    // Двухбуквенный префикс совпадает с началом многих слов словаря
+    @Benchmark
+    public List<Long> searchPrefix() {
+        return index.search(randomWord(random).substring(0, 2), 10);
+    }
+
+    // Номер слова распределен логарифмически: слово с номером n встречается примерно в 1/n раз реже первого
+    private String randomWord(SplittableRandom random) {
+        int rank = (int) Math.exp(random.nextDouble() * Math.log(vocabulary));
+        return words[Math.min(rank, vocabulary) - 1];
+    }
+}
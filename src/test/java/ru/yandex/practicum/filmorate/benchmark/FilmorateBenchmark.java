@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
+import ru.yandex.practicum.filmorate.dto.UserDTO;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.LikeIndex;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Горячие пути сервисов, маппинг строк и DTO на приложении с H2 в памяти, заполненной синтетическими данными.
+// Фильмов в десять раз меньше, чем пользователей; у каждого пользователя 20 друзей и 10 лайков
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmorateBenchmark {
+
+    private static final int FRIENDS_PER_USER = 20;
+    private static final int LIKES_PER_USER = 10;
+    private static final int PAGE_SIZE = 100;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    private int users;
+
+    private int films;
+
+    private ConfigurableApplicationContext context;
+    private FilmService filmService;
+    private UserService userService;
+    private FilmRepository filmRepository;
+    private UserRepository userRepository;
+
+    private List<Film> filmPage;
+    private List<User> userPage;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        films = Math.max(1, users / 10);
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark-" + users + ";DB_CLOSE_DELAY=-1",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.zalando.logbook=OFF");
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+        filmRepository = context.getBean(FilmRepository.class);
+        userRepository = context.getBean(UserRepository.class);
+
+        seed(context.getBean(JdbcTemplate.class));
+        // Индексы в памяти загружаются при старте, а данные появились после него
+        context.getBean(FriendGraph.class).load();
+        context.getBean(FilmLeaderboard.class).load();
+        context.getBean(LikeIndex.class).load();
+        context.getBean(FilmSearchIndex.class).load();
+
+        filmPage = filmRepository.findPage(0, PAGE_SIZE);
+        userPage = userRepository.findPage(0, PAGE_SIZE);
+        random = new SplittableRandom(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void mapFilmsToDto(Blackhole blackhole) {
+        for (Film film : filmPage) {
+            blackhole.consume(FilmMapper.mapToFilmDto(film));
+        }
+    }
+
+    @Benchmark
+    public void mapUsersToDto(Blackhole blackhole) {
+        for (User user : userPage) {
+            blackhole.consume(UserMapper.mapToUserDto(user));
+        }
+    }
+
+    @Benchmark
+    public List<Film> mapFilmRows() {
+        return filmRepository.findPage(randomCursor(films), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<User> mapUserRows() {
+        return userRepository.findPage(randomCursor(users), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<UserDTO> getMutualFriends() {
+        long userId = randomId(users);
+        long otherUserId = userId % users + 1;
+        return userService.getMutualFriends(userId, otherUserId);
+    }
+
+    @Benchmark
+    public List<FilmDTO> getPopularFilms() {
+        return filmService.getPopularFilms(10, null, null);
+    }
+
+    @Benchmark
+    public List<FilmDTO> getPopularFilmsByGenreAndYear() {
+        return filmService.getPopularFilms(10, 1 + random.nextInt(6), 2000);
+    }
+
+    // Частое слово из всех названий и номер фильма, который есть только в одном названии и как начало других
+    @Benchmark
+    public List<FilmDTO> searchFilms() {
+        return filmService.searchFilms("фильм " + randomId(films), 10);
+    }
+
+    @Benchmark
+    public PageDTO<FilmDTO> findAllFilms() {
+        return filmService.findAll(randomCursor(films), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public PageDTO<UserDTO> findAllUsers() {
+        return userService.findAll(randomCursor(users), PAGE_SIZE);
+    }
+
+    private long randomId(int bound) {
+        return 1 + random.nextInt(bound);
+    }
+
+    // Курсор, после которого остается полная страница
+    private long randomCursor(int bound) {
+        return random.nextInt(Math.max(1, bound - PAGE_SIZE + 1));
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        SplittableRandom seed = new SplittableRandom(42);
+        Date birthday = Date.valueOf(LocalDate.of(1990, 1, 1));
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            rows.add(new Object[]{"user" + i + "@filmorate.ru", "user" + i, "Пользователь " + i, birthday});
+        }
+        batch(jdbcTemplate, "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)", rows);
+
+        Date releaseDate = Date.valueOf(LocalDate.of(2000, 1, 1));
+        for (int i = 1; i <= films; i++) {
+            rows.add(new Object[]{"Фильм " + i, "Описание фильма " + i, releaseDate, 90 + i % 60, 1 + i % 5});
+        }
+        batch(jdbcTemplate, "INSERT INTO films(name, description, release_date, duration, mpa_id) "
+                + "VALUES (?, ?, ?, ?, ?)", rows);
+
+        for (int i = 1; i <= films; i++) {
+            rows.add(new Object[]{i, 1 + i % 6});
+            rows.add(new Object[]{i, 1 + (i + 3) % 6});
+        }
+        batch(jdbcTemplate, "INSERT INTO films_genre(film_id, genre_id) VALUES (?, ?)", rows);
+
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < FRIENDS_PER_USER; i++) {
+                long friendId = 1 + seed.nextInt(users);
+                if (friendId != userId) {
+                    rows.add(new Object[]{friendId, userId});
+                }
+            }
+        }
+        batch(jdbcTemplate, "MERGE INTO friends(user_id, friend_id, friendship_status) KEY(user_id, friend_id) "
+                + "VALUES (?, ?, false)", rows);
+
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < LIKES_PER_USER; i++) {
+                // Квадрат равномерной величины смещает выбор к фильмам с меньшими id
+                double skewed = seed.nextDouble() * seed.nextDouble();
+                rows.add(new Object[]{1 + (long) (skewed * films), userId});
+            }
+        }
+        batch(jdbcTemplate, "MERGE INTO likes(film_id, user_id) KEY(film_id, user_id) VALUES (?, ?)", rows);
+    }
+
+    private static void batch(JdbcTemplate jdbcTemplate, String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(rows.size(), from + BATCH_SIZE)));
+        }
+        rows.clear();
+    }
+}
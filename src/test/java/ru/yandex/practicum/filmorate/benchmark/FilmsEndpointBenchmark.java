@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность GET /films с синхронным логированием Logbook (профиль по умолчанию)
+// и с асинхронным выборочным логированием (профиль prod). Консольный вывод приложения уходит в файл
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(4)
+@Fork(1)
+public class FilmsEndpointBenchmark {
+
+    private static final int FILMS = 1000;
+
+    @Param({"default", "prod"})
+    private String profile;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest request;
+    private Path logFile;
+    private PrintStream originalOut;
+    private PrintStream logOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        logFile = Files.createTempFile("filmorate-" + profile, ".log");
+        originalOut = System.out;
+        logOut = new PrintStream(new FileOutputStream(logFile.toFile()), false);
+        System.setOut(logOut);
+
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .profiles(profile)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:films-" + profile + ";DB_CLOSE_DELAY=-1");
+        seed(context.getBean(JdbcTemplate.class));
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/films?limit=100")).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        System.setOut(originalOut);
+        logOut.close();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public int getFilms() throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        Date releaseDate = Date.valueOf(LocalDate.of(2000, 1, 1));
+        List<Object[]> films = new ArrayList<>(FILMS);
+        List<Object[]> genres = new ArrayList<>(FILMS * 2);
+        for (int i = 1; i <= FILMS; i++) {
+            films.add(new Object[]{"Фильм " + i, "Описание фильма " + i, releaseDate, 90 + i % 60, 1 + i % 5});
+            genres.add(new Object[]{i, 1 + i % 6});
+            genres.add(new Object[]{i, 1 + (i + 3) % 6});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO films(name, description, release_date, duration, mpa_id) "
+                + "VALUES (?, ?, ?, ?, ?)", films);
+        jdbcTemplate.batchUpdate("INSERT INTO films_genre(film_id, genre_id) VALUES (?, ?)", genres);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Условный GET: 404 для несуществующей записи проверяется раньше совпадения тега, иначе клиент с подходящим
+// тегом получил бы 304 для записи, которой нет
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    private static final long MISSING_ID = 999_999;
+    private static final String FILM = "{\"name\":\"%s\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\"," +
+            "\"duration\":90,\"mpa\":{\"id\":1}}";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EntityVersions entityVersions;
+
+    @Test
+    void missingEntityIsNotFoundEvenWithMatchingTag() throws Exception {
+        mockMvc.perform(get("/films/{id}", MISSING_ID)
+                        .header(HttpHeaders.IF_NONE_MATCH, entityVersions.getFilmETag(MISSING_ID)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/{id}", MISSING_ID)
+                        .header(HttpHeaders.IF_NONE_MATCH, entityVersions.getUserETag(MISSING_ID)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void missingReferenceDataIsNotFoundEvenWithMatchingTag() throws Exception {
+        String genresTag = mockMvc.perform(get("/genres")).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String mpaTag = mockMvc.perform(get("/mpa")).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/genres/999").header(HttpHeaders.IF_NONE_MATCH, genresTag))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/genres/1").header(HttpHeaders.IF_NONE_MATCH, genresTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/mpa/999").header(HttpHeaders.IF_NONE_MATCH, mpaTag))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/mpa/1").header(HttpHeaders.IF_NONE_MATCH, mpaTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void tagChangesAfterUpdate() throws Exception {
+        String created = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(FILM.formatted("Первый")))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long filmId = ((Number) JsonPath.read(created, "$.id")).longValue();
+
+        String tag = mockMvc.perform(get("/films/{id}", filmId)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(tag).isNotBlank();
+        mockMvc.perform(get("/films/{id}", filmId).header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":" + filmId + "," + FILM.formatted("Второй").substring(1)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/{id}", filmId).header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(tag)));
+    }
+}
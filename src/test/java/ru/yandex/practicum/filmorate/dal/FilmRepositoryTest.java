@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmResultSetExtractor;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Тесты управляют транзакциями сами: гонке нужны две транзакции, которые видят друг друга только после фиксации
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({FilmRepository.class, FilmResultSetExtractor.class, FilmRowMapper.class, ReferenceDataCache.class,
+        GenreRepository.class, MpaRepository.class, GenreRowMapper.class, MpaRowMapper.class})
+class FilmRepositoryTest {
+
+    @Autowired
+    private FilmRepository filmRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+
+    private long filmId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+        filmId = jdbcTemplate.queryForObject("SELECT film_id FROM FINAL TABLE (INSERT INTO films(name, " +
+                "description, release_date, duration, mpa_id) VALUES ('f', 'd', DATE '2000-01-01', 90, 1))", Long.class);
+        userId = jdbcTemplate.queryForObject("SELECT user_id FROM FINAL TABLE (INSERT INTO users(email, login, " +
+                "name, birthday) VALUES ('u@b.c', 'u', 'u', DATE '1990-01-01'))", Long.class);
+    }
+
+    @Test
+    void addLikeReportsWhetherLikeIsNew() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        assertThat(filmRepository.addLike(filmId, userId, now)).isEqualTo(1);
+        assertThat(filmRepository.addLike(filmId, userId, now)).isZero();
+        assertThat(filmRepository.getLikeTime(filmId, userId)).contains(now);
+    }
+
+    @Test
+    void concurrentDuplicateLikeIsTreatedAsAlreadyLiked() throws Exception {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        CompletableFuture<Integer> racingLike;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO likes(film_id, user_id, created_at) VALUES (?, ?, ?)")) {
+                ps.setLong(1, filmId);
+                ps.setLong(2, userId);
+                ps.setTimestamp(3, Timestamp.from(now));
+                ps.executeUpdate();
+            }
+            // Незафиксированный лайк не виден NOT EXISTS, поэтому вставка ждет блокировку uq_likes
+            racingLike = CompletableFuture.supplyAsync(() -> filmRepository.addLike(filmId, userId, now));
+            TimeUnit.MILLISECONDS.sleep(200);
+            connection.commit();
+        }
+
+        assertThat(racingLike.get(10, TimeUnit.SECONDS)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class)).isEqualTo(1);
+    }
+}
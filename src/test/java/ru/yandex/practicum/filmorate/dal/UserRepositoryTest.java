@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Строка (user_id, friend_id, friendship_status) записывается как "user_id:friend_id:status"
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserRepository.class, UserRowMapper.class})
+class UserRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private long first;
+    private long second;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM friends");
+        jdbcTemplate.update("DELETE FROM users");
+        first = insertUser("first");
+        second = insertUser("second");
+    }
+
+    @Test
+    void requestIsStoredUnconfirmed() {
+        userRepository.addFriend(first, second);
+
+        assertThat(friendships()).containsExactly(second + ":" + first + ":false");
+    }
+
+    @Test
+    void counterRequestConfirmsBothRows() {
+        userRepository.addFriend(first, second);
+        userRepository.addFriend(second, first);
+
+        assertThat(friendships()).containsExactlyInAnyOrder(
+                second + ":" + first + ":true",
+                first + ":" + second + ":true");
+    }
+
+    @Test
+    void repeatedRequestsChangeNothing() {
+        userRepository.addFriend(first, second);
+        userRepository.addFriend(first, second);
+        assertThat(friendships()).containsExactly(second + ":" + first + ":false");
+
+        userRepository.addFriend(second, first);
+        userRepository.addFriend(second, first);
+        userRepository.addFriend(first, second);
+        assertThat(friendships()).containsExactlyInAnyOrder(
+                second + ":" + first + ":true",
+                first + ":" + second + ":true");
+    }
+
+    @Test
+    void removalDeletesRequestAndUnconfirmsCounterRequest() {
+        userRepository.addFriend(first, second);
+        userRepository.addFriend(second, first);
+
+        userRepository.removeFriend(first, second);
+
+        assertThat(friendships()).containsExactly(first + ":" + second + ":false");
+
+        userRepository.removeFriend(first, second);
+        assertThat(friendships()).containsExactly(first + ":" + second + ":false");
+
+        // Повторная заявка снова подтверждает дружбу
+        userRepository.addFriend(first, second);
+        assertThat(friendships()).containsExactlyInAnyOrder(
+                second + ":" + first + ":true",
+                first + ":" + second + ":true");
+    }
+
+    @Test
+    void removalWithoutFriendshipChangesNothing() {
+        userRepository.removeFriend(first, second);
+
+        assertThat(friendships()).isEmpty();
+    }
+
+    // Встречные заявки в параллельных транзакциях: как и UserService, каждая сначала блокирует обоих пользователей,
+    // поэтому вторая видит зафиксированную первую и подтверждает дружбу
+    @Test
+    void concurrentCounterRequestsConfirmFriendship() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            jdbcTemplate.update("DELETE FROM friends");
+            CountDownLatch start = new CountDownLatch(1);
+            CompletableFuture<Void> request = CompletableFuture.runAsync(() -> addFriendInTransaction(start,
+                    first, second), task -> Thread.ofPlatform().start(task));
+            CompletableFuture<Void> counterRequest = CompletableFuture.runAsync(() -> addFriendInTransaction(start,
+                    second, first), task -> Thread.ofPlatform().start(task));
+            start.countDown();
+            CompletableFuture.allOf(request, counterRequest).get(10, TimeUnit.SECONDS);
+
+            assertThat(friendships()).containsExactlyInAnyOrder(
+                    second + ":" + first + ":true",
+                    first + ":" + second + ":true");
+        }
+    }
+
+    private void addFriendInTransaction(CountDownLatch start, long userId, long friendId) {
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.lockUsers(userId, friendId);
+            userRepository.addFriend(userId, friendId);
+        });
+    }
+
+    private long insertUser(String login) {
+        return jdbcTemplate.queryForObject("SELECT user_id FROM FINAL TABLE (INSERT INTO users(email, login, " +
+                "name, birthday) VALUES (?, ?, ?, DATE '1990-01-01'))", Long.class, login + "@b.c", login, login);
+    }
+
+    private List<String> friendships() {
+        return jdbcTemplate.query("SELECT user_id, friend_id, friendship_status FROM friends",
+                (rs, rowNum) -> rs.getLong("user_id") + ":" + rs.getLong("friend_id") + ":"
+                        + rs.getBoolean("friendship_status"));
+    }
+}
@@ -0,0 +1,202 @@
+package ru.yandex.practicum.filmorate.dal.replica;
+
+import org.h2.Driver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Основная БД и реплика - две отдельные БД H2 в памяти, как в режиме с репликой
+class ReplicaSyncTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    // Жанр есть только на реплике: по нему видно, откуда прочитала транзакция
+    private static final int REPLICA_ONLY_GENRE_ID = 100;
+
+    private ReplicaSync replicaSync;
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private JdbcTemplate routed;
+    private TransactionTemplate transaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primaryDataSource = dataSource("primary");
+        DataSource replicaDataSource = dataSource("replica");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(primaryDataSource);
+        replicaSync = new ReplicaSync(primaryDataSource, replicaDataSource, ReadYourWrites.FALLBACK_TO_PRIMARY,
+                Duration.ofMillis(100));
+        replicaSync.afterSingletonsInstantiated();
+
+        DataSource routing = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(
+                new ChangeCapturingDataSource(primaryDataSource), replicaDataSource, replicaSync));
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        routed = new JdbcTemplate(routing);
+        transaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        readOnlyTransaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        readOnlyTransaction.setReadOnly(true);
+        replica.update("INSERT INTO genres(genre_id, name) VALUES (?, 'Только на реплике')", REPLICA_ONLY_GENRE_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicaSync.endRequest();
+        replicaSync.destroy();
+        primary.execute("SHUTDOWN");
+        replica.execute("SHUTDOWN");
+    }
+
+    @Test
+    void committedChangesReachReplica() {
+        long first = insertUser("first");
+        long second = insertUser("second");
+        long filmId = routed.queryForObject("SELECT film_id FROM FINAL TABLE (INSERT INTO films(name, description, " +
+                "release_date, duration, mpa_id) VALUES ('f', 'd', DATE '2000-01-01', 90, 1))", Long.class);
+        transaction.executeWithoutResult(status -> {
+            routed.update("INSERT INTO likes(film_id, user_id) VALUES (?, ?)", filmId, first);
+            routed.update("INSERT INTO friends(user_id, friend_id) VALUES (?, ?)", first, second);
+            routed.update("UPDATE users SET name = 'renamed' WHERE user_id = ?", second);
+        });
+        routed.update("DELETE FROM users WHERE user_id = ?", first);
+
+        awaitReplica();
+
+        for (String query : List.of("SELECT user_id, name FROM users ORDER BY user_id",
+                "SELECT film_id, name FROM films ORDER BY film_id",
+                "SELECT film_id, user_id FROM likes ORDER BY film_id, user_id",
+                "SELECT user_id, friend_id FROM friends ORDER BY user_id, friend_id")) {
+            assertThat(replica.queryForList(query)).isEqualTo(primary.queryForList(query));
+        }
+        assertThat(replica.queryForList("SELECT name FROM users", String.class)).containsExactly("renamed");
+    }
+
+    @Test
+    void onlyCommittedTransactionsArePublished() {
+        List<Long> positions = new ArrayList<>();
+        replicaSync.beginRequest(0, positions::add);
+
+        transaction.executeWithoutResult(status -> {
+            routed.update("INSERT INTO users(email, login, name, birthday) " +
+                    "VALUES ('r@b.c', 'r', 'r', DATE '1990-01-01')");
+            status.setRollbackOnly();
+        });
+        assertThat(positions).isEmpty();
+
+        insertUser("committed");
+        insertUser("next");
+        assertThat(positions).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void failedAutoCommitStatementDoesNotLeakKeys() {
+        insertUser("existing");
+        awaitReplica();
+        long id = primary.queryForObject("SELECT MAX(user_id) FROM users", Long.class) + 1;
+
+        // Первая строка вставлена и попала в триггер, вторая нарушает первичный ключ
+        assertThatThrownBy(() -> routed.update("INSERT INTO users(user_id, email, login, name, birthday) " +
+                "VALUES (?, 'a@b.c', 'a', 'a', DATE '1990-01-01'), (?, 'b@b.c', 'b', 'b', DATE '1990-01-01')", id, id))
+                .isInstanceOf(DataAccessException.class);
+
+        ThreadLocal<?> changes = (ThreadLocal<?>) ReflectionTestUtils.getField(ChangeCapture.class, "CHANGES");
+        assertThat(changes.get()).isNull();
+        awaitReplica();
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM users", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void readOnlyTransactionsReadFromReplica() {
+        assertThat(readFromReplica()).isTrue();
+        assertThat((boolean) transaction.execute(status -> hasReplicaOnlyGenre())).isFalse();
+        assertThat(routed.queryForObject("SELECT COUNT(*) FROM genres WHERE genre_id = ?", Integer.class,
+                REPLICA_ONLY_GENRE_ID)).isZero();
+    }
+
+    @Test
+    void writerReadsFromPrimaryUntilReplicaAppliesItsWrite() throws Exception {
+        // Пока таблица переименована, реплика не может применить изменения пользователей
+        replica.execute("ALTER TABLE users RENAME TO users_broken");
+        List<Long> positions = new ArrayList<>();
+        replicaSync.beginRequest(0, positions::add);
+        insertUser("writer");
+        await(() -> replicaSync.health().getStatus().equals(Status.DOWN));
+
+        assertThat(replicaSync.health().getDetails()).containsKey("error").containsEntry("lag", 1L);
+        assertThat(readFromReplica()).isFalse();
+        // Запись этого потока не мешает остальным читать с реплики, если они не передали ее позицию
+        assertThat(CompletableFuture.supplyAsync(this::readFromReplica, this::runInNewThread).get()).isTrue();
+        assertThat(CompletableFuture.supplyAsync(() -> {
+            replicaSync.beginRequest(positions.getLast(), null);
+            return readFromReplica();
+        }, this::runInNewThread).get()).isFalse();
+
+        replica.execute("ALTER TABLE users_broken RENAME TO users");
+        awaitReplica();
+
+        assertThat(replicaSync.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(readFromReplica()).isTrue();
+        assertThat(replica.queryForList("SELECT login FROM users", String.class)).containsExactly("writer");
+    }
+
+    private long insertUser(String login) {
+        return routed.queryForObject("SELECT user_id FROM FINAL TABLE (INSERT INTO users(email, login, name, " +
+                "birthday) VALUES (?, ?, ?, DATE '1990-01-01'))", Long.class, login + "@b.c", login, login);
+    }
+
+    private boolean readFromReplica() {
+        return readOnlyTransaction.execute(status -> hasReplicaOnlyGenre());
+    }
+
+    private boolean hasReplicaOnlyGenre() {
+        return routed.queryForObject("SELECT COUNT(*) FROM genres WHERE genre_id = ?", Integer.class,
+                REPLICA_ONLY_GENRE_ID) > 0;
+    }
+
+    private void runInNewThread(Runnable task) {
+        Thread.ofPlatform().start(task);
+    }
+
+    private void awaitReplica() {
+        await(() -> replicaSync.getLag() == 0);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("ожидание реплики").isLessThan(deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static DataSource dataSource(String name) {
+        return new SimpleDriverDataSource(new Driver(), "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() +
+                ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+// Нагрузочный прогон запущенного приложения: заполняет его данными через API, затем замеряет пропускную
+// способность и перцентили задержки для /films/popular и /users/{id}/friends.
+// Аргументы: адрес приложения, число одновременных клиентов, длительность замера в секундах
+public class EndpointLoadRunner {
+
+    private static final int USERS = 1000;
+    private static final int FILMS = 200;
+    private static final int LIKES_PER_USER = 5;
+    private static final int FRIENDS_PER_USER = 20;
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final Duration duration;
+    private final HttpClient client;
+
+    public EndpointLoadRunner(String baseUrl, int concurrency, Duration duration) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.duration = duration;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        EndpointLoadRunner runner = new EndpointLoadRunner(baseUrl, concurrency, Duration.ofSeconds(seconds));
+        runner.seed();
+        System.out.printf("%-24s %8s %12s %10s %10s %10s%n", "endpoint", "clients", "req/s", "p50, ms", "p99, ms",
+                "errors");
+        runner.measure("/films/popular", i -> "/films/popular?count=10");
+        runner.measure("/users/{id}/friends", i -> "/users/" + (1 + i % USERS) + "/friends");
+    }
+
+    private void seed() {
+        long started = System.nanoTime();
+        runInParallel(USERS, i -> post("/users", "{\"email\":\"load" + i + "@filmorate.ru\",\"login\":\"load" + i
+                + "\",\"name\":\"Load " + i + "\",\"birthday\":\"1990-01-01\"}"));
+        runInParallel(FILMS, i -> post("/films", "{\"name\":\"Load film " + i + "\",\"description\":\"load\","
+                + "\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1},\"genres\":[{\"id\":1}]}"));
+        runInParallel(USERS, i -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long userId = i + 1;
+            for (int like = 0; like < LIKES_PER_USER; like++) {
+                put("/films/" + (1 + random.nextInt(FILMS)) + "/like/" + userId);
+            }
+            for (int friend = 0; friend < FRIENDS_PER_USER; friend++) {
+                long friendId = 1 + random.nextInt(USERS);
+                if (friendId != userId) {
+                    put("/users/" + userId + "/friends/" + friendId);
+                }
+            }
+        });
+        System.out.printf("Данные загружены за %d мс%n", Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    private void measure(String name, IntFunction<String> pathByIteration) throws InterruptedException {
+        // Короткий прогрев, чтобы JIT и пул соединений не попали в замер
+        runFor(Duration.ofSeconds(3), pathByIteration);
+        Result result = runFor(duration, pathByIteration);
+        System.out.printf("%-24s %8d %12.0f %10.2f %10.2f %10d%n", name, concurrency,
+                result.latencies().length / (duration.toNanos() / 1e9),
+                result.percentile(0.5) / 1e6, result.percentile(0.99) / 1e6, result.errors());
+    }
+
+    private Result runFor(Duration runDuration, IntFunction<String> pathByIteration) throws InterruptedException {
+        long deadline = System.nanoTime() + runDuration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latenciesByClient = new ArrayList<>(concurrency);
+        List<Thread> clients = new ArrayList<>(concurrency);
+        for (int c = 0; c < concurrency; c++) {
+            int clientNumber = c;
+            long[][] latencies = {new long[1024]};
+            int[] size = {0};
+            clients.add(Thread.ofVirtual().start(() -> {
+                int iteration = clientNumber;
+                while (System.nanoTime() < deadline) {
+                    long started = System.nanoTime();
+                    if (!get(pathByIteration.apply(iteration))) {
+                        errors.incrementAndGet();
+                    }
+                    if (size[0] == latencies[0].length) {
+                        latencies[0] = Arrays.copyOf(latencies[0], size[0] * 2);
+                    }
+                    latencies[0][size[0]++] = System.nanoTime() - started;
+                    iteration += concurrency;
+                }
+                synchronized (latenciesByClient) {
+                    latenciesByClient.add(Arrays.copyOf(latencies[0], size[0]));
+                }
+            }));
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        long[] all = latenciesByClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all, errors.get());
+    }
+
+    private void runInParallel(int tasks, IntConsumer task) {
+        try (ExecutorService executor = Executors.newFixedThreadPool(32)) {
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                executor.execute(() -> task.accept(index));
+            }
+        }
+    }
+
+    private boolean get(String path) {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET());
+    }
+
+    private boolean post(String path, String json) {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)));
+    }
+
+    private boolean put(String path) {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path)).PUT(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    private boolean send(HttpRequest.Builder request) {
+        try {
+            HttpResponse<Void> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 400;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private record Result(long[] latencies, long errors) {
+
+        double percentile(double quantile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            return latencies[(int) Math.min(latencies.length - 1, Math.ceil(quantile * latencies.length) - 1)];
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.LongConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+class EntityIdsTest {
+
+    private final FilmRepository filmRepository = Mockito.mock(FilmRepository.class);
+    private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+    private final EntityIds entityIds = new EntityIds(filmRepository, userRepository);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void loadReplacesIds() {
+        filmIds(1, 2, 70_000);
+        userIds(5);
+        entityIds.load();
+
+        assertThat(entityIds.containsFilm(2)).isTrue();
+        assertThat(entityIds.containsFilm(70_000)).isTrue();
+        assertThat(entityIds.containsFilm(3)).isFalse();
+        assertThat(entityIds.containsUser(5)).isTrue();
+        assertThat(entityIds.containsUser(1)).isFalse();
+
+        filmIds(3);
+        entityIds.loadFilms();
+
+        assertThat(entityIds.containsFilm(3)).isTrue();
+        assertThat(entityIds.containsFilm(1)).isFalse();
+        assertThat(entityIds.containsUser(5)).isTrue();
+    }
+
+    @Test
+    void addIsVisibleOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        entityIds.addUser(7);
+        entityIds.addFilm(8);
+
+        assertThat(entityIds.containsUser(7)).isFalse();
+        assertThat(entityIds.containsFilm(8)).isFalse();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(entityIds.containsUser(7)).isTrue();
+        assertThat(entityIds.containsFilm(8)).isTrue();
+    }
+
+    @Test
+    void rolledBackAddIsDropped() {
+        TransactionSynchronizationManager.initSynchronization();
+        entityIds.addUser(7);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(entityIds.containsUser(7)).isFalse();
+    }
+
+    // Пока идет сканирование таблицы, проверки отвечают по старому множеству, а добавленный в это время id
+    // попадает и в новое множество, даже если сканирование его не застало
+    @Test
+    void idAddedDuringLoadSurvivesIt() throws Exception {
+        userIds(1);
+        entityIds.loadUsers();
+        CountDownLatch scanStarted = new CountDownLatch(1);
+        CountDownLatch added = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            LongConsumer consumer = invocation.getArgument(0);
+            consumer.accept(1);
+            scanStarted.countDown();
+            added.await();
+            return null;
+        }).when(userRepository).forEachUserId(any());
+
+        CompletableFuture<Void> load = CompletableFuture.runAsync(entityIds::loadUsers,
+                task -> Thread.ofPlatform().start(task));
+        scanStarted.await();
+        entityIds.addUser(2);
+        assertThat(entityIds.containsUser(1)).isTrue();
+        assertThat(entityIds.containsUser(2)).isTrue();
+        added.countDown();
+        load.get();
+
+        assertThat(entityIds.containsUser(1)).isTrue();
+        assertThat(entityIds.containsUser(2)).isTrue();
+    }
+
+    private void filmIds(long... ids) {
+        doAnswer(invocation -> {
+            LongConsumer consumer = invocation.getArgument(0);
+            for (long id : ids) {
+                consumer.accept(id);
+            }
+            return null;
+        }).when(filmRepository).forEachFilmId(any());
+    }
+
+    private void userIds(long... ids) {
+        doAnswer(invocation -> {
+            LongConsumer consumer = invocation.getArgument(0);
+            for (long id : ids) {
+                consumer.accept(id);
+            }
+            return null;
+        }).when(userRepository).forEachUserId(any());
+    }
+}
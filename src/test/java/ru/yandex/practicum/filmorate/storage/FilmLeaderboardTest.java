@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmLeaderboardTest {
+
+    private final FilmRepository filmRepository = Mockito.mock(FilmRepository.class);
+    private final FilmLeaderboard filmLeaderboard = new FilmLeaderboard(filmRepository);
+
+    @BeforeEach
+    void setUp() {
+        film(1, 2000, Set.of(1));
+        film(2, 2000, Set.of(2));
+        film(3, 2010, Set.of(1, 2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void topIsOrderedByLikesThenId() {
+        like(1, 1);
+        like(2, 3);
+        like(3, 3);
+
+        assertThat(filmLeaderboard.getTop(10)).containsExactly(2L, 3L, 1L);
+        assertThat(filmLeaderboard.getTop(2)).containsExactly(2L, 3L);
+        assertThat(filmLeaderboard.getMaxLikes()).isEqualTo(3);
+    }
+
+    @Test
+    void bucketsFilterByGenreAndYear() {
+        like(1, 1);
+        like(2, 2);
+        like(3, 3);
+
+        assertThat(filmLeaderboard.getTop(1, null, 10)).containsExactly(3L, 1L);
+        assertThat(filmLeaderboard.getTop(null, 2000, 10)).containsExactly(2L, 1L);
+        assertThat(filmLeaderboard.getTop(2, 2010, 10)).containsExactly(3L);
+        assertThat(filmLeaderboard.getTop(2, 1999, 10)).isEmpty();
+    }
+
+    @Test
+    void categoriesAreReadOnlyOnFirstLike() {
+        like(1, 3);
+
+        Mockito.verify(filmRepository, Mockito.times(1)).getReleaseYear(1);
+        Mockito.verify(filmRepository, Mockito.times(1)).getGenreIds(1);
+    }
+
+    @Test
+    void filmLeavesRankingWhenLastLikeIsRemoved() {
+        like(1, 2);
+        filmLeaderboard.decrement(1);
+        filmLeaderboard.decrement(1);
+        filmLeaderboard.decrement(1);
+
+        assertThat(filmLeaderboard.getTop(10)).isEmpty();
+        assertThat(filmLeaderboard.getTop(1, 2000, 10)).isEmpty();
+    }
+
+    @Test
+    void updatedCategoriesMoveFilmBetweenBuckets() {
+        like(1, 1);
+
+        filmLeaderboard.updateCategories(1, 2010, Set.of(2));
+
+        assertThat(filmLeaderboard.getTop(1, null, 10)).isEmpty();
+        assertThat(filmLeaderboard.getTop(2, 2010, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void rolledBackUpdateKeepsFilmInOldBuckets() {
+        like(1, 1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        filmLeaderboard.updateCategories(1, 2010, Set.of(2));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(filmLeaderboard.getTop(1, 2000, 10)).containsExactly(1L);
+        assertThat(filmLeaderboard.getTop(2, 2010, 10)).isEmpty();
+    }
+
+    private void film(long filmId, int releaseYear, Set<Integer> genreIds) {
+        Mockito.when(filmRepository.getReleaseYear(filmId)).thenReturn(Optional.of(releaseYear));
+        Mockito.when(filmRepository.getGenreIds(filmId)).thenReturn(genreIds);
+    }
+
+    private void like(long filmId, int times) {
+        for (int i = 0; i < times; i++) {
+            filmLeaderboard.increment(filmId);
+        }
+    }
+}
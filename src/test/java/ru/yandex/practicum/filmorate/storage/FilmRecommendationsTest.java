@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmRecommendationsTest {
+
+    private final LikeIndex likeIndex = new LikeIndex(null);
+    private final FilmRecommendations filmRecommendations = new FilmRecommendations(likeIndex);
+
+    @BeforeEach
+    void setUp() {
+        like(1, 1, 2, 3);
+    }
+
+    @Test
+    void filmsAreScoredByNeighbourOverlap() {
+        like(2, 1, 2, 3, 4);
+        like(3, 1, 5);
+        like(4, 1, 2, 6);
+        // Без общих лайков пользователь не сосед, и его фильмы не рекомендуются
+        like(5, 7);
+
+        assertThat(filmRecommendations.recommend(1, 10)).containsExactly(4, 6, 5);
+        assertThat(filmRecommendations.recommend(1, 2)).containsExactly(4, 6);
+    }
+
+    @Test
+    void scoresOfSeveralNeighboursAddUp() {
+        like(2, 1, 2, 4);
+        like(3, 1, 5);
+        like(4, 1, 5);
+        like(5, 1, 5);
+
+        // Фильм 5 набирает 1 + 1 + 1 от трех соседей, фильм 4 - 2 от одного
+        assertThat(filmRecommendations.recommend(1, 10)).containsExactly(5, 4);
+    }
+
+    @Test
+    void equalScoresAreOrderedByFilmId() {
+        like(2, 1, 9);
+        like(3, 1, 8);
+
+        assertThat(filmRecommendations.recommend(1, 10)).containsExactly(8, 9);
+    }
+
+    // При равном пересечении в десятку соседей попадают пользователи с меньшими id
+    @Test
+    void onlyClosestNeighboursAreUsed() {
+        for (int i = 0; i < 11; i++) {
+            like(100 + i, 1, 1000 + i);
+        }
+
+        assertThat(filmRecommendations.recommend(1, 20)).hasSize(10).doesNotContain(1010);
+    }
+
+    @Test
+    void userWithoutLikesGetsNothing() {
+        like(2, 1, 4);
+
+        assertThat(filmRecommendations.recommend(99, 10)).isEmpty();
+        assertThat(filmRecommendations.recommend(2, 10)).containsExactly(2, 3);
+    }
+
+    private void like(long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            likeIndex.addLike(filmId, userId);
+        }
+    }
+}
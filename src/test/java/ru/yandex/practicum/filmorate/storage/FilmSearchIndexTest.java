@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+
+    private final FilmSearchIndex filmSearchIndex = new FilmSearchIndex(null, new FilmLeaderboard(null));
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void nameMatchesRankAboveDescriptionAndWholeWordsAbovePrefixes() {
+        index(1, "Собака", "про кота");
+        index(2, "Котенок", "история");
+        index(3, "Кот", "история");
+
+        assertThat(filmSearchIndex.search("кот", 10)).containsExactly(3L, 2L, 1L);
+        assertThat(filmSearchIndex.search("кот", 2)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void everyQueryWordMustMatch() {
+        index(1, "Ёжик в тумане", "мультфильм");
+        index(2, "Ёжик", "документальный");
+
+        assertThat(filmSearchIndex.search("ежик туман", 10)).containsExactly(1L);
+        assertThat(filmSearchIndex.search("ЁЖИК", 10)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(filmSearchIndex.search("ежик кот", 10)).isEmpty();
+        // Однобуквенное слово запроса ищется только целиком
+        assertThat(filmSearchIndex.search("в", 10)).containsExactly(1L);
+        assertThat(filmSearchIndex.search("ё", 10)).isEmpty();
+    }
+
+    @Test
+    void reindexReplacesOldWords() {
+        index(1, "Старое название", "описание");
+
+        index(1, "Новое название", "описание");
+
+        assertThat(filmSearchIndex.search("старое", 10)).isEmpty();
+        assertThat(filmSearchIndex.search("новое", 10)).containsExactly(1L);
+    }
+
+    @Test
+    void indexChangesOnlyAfterCommit() {
+        index(1, "Старое название", "описание");
+        TransactionSynchronizationManager.initSynchronization();
+
+        index(1, "Новое название", "описание");
+        index(2, "Новое кино", "описание");
+
+        assertThat(filmSearchIndex.search("новое", 10)).isEmpty();
+        assertThat(filmSearchIndex.search("старое", 10)).containsExactly(1L);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(filmSearchIndex.search("новое", 10)).containsExactly(1L, 2L);
+        assertThat(filmSearchIndex.search("старое", 10)).isEmpty();
+    }
+
+    @Test
+    void rolledBackChangeIsNotIndexed() {
+        index(1, "Старое название", "описание");
+        TransactionSynchronizationManager.initSynchronization();
+        index(1, "Новое название", "описание");
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(filmSearchIndex.search("новое", 10)).isEmpty();
+        assertThat(filmSearchIndex.search("старое", 10)).containsExactly(1L);
+    }
+
+    private void index(long filmId, String name, String description) {
+        Film film = new Film();
+        film.setId(filmId);
+        film.setName(name);
+        film.setDescription(description);
+        filmSearchIndex.index(film);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+
+class FriendGraphTest {
+
+    private final FriendGraph friendGraph = new FriendGraph(null);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void requestIsPendingUntilAccepted() {
+        friendGraph.addFriend(1, 2);
+
+        assertThat(friendGraph.getFriends(1)).containsExactly(2);
+        assertThat(friendGraph.getFriends(2)).isEmpty();
+        assertThat(friendGraph.getFollowers(2)).containsExactly(1);
+        assertThat(friendGraph.getFollowers(1)).isEmpty();
+
+        friendGraph.addFriend(2, 1);
+
+        assertThat(friendGraph.getFriends(1)).containsExactly(2);
+        assertThat(friendGraph.getFriends(2)).containsExactly(1);
+        assertThat(friendGraph.getFollowers(1)).containsExactly(2);
+        assertThat(friendGraph.getFollowers(2)).containsExactly(1);
+    }
+
+    @Test
+    void repeatedRequestChangesNothing() {
+        friendGraph.addFriend(1, 2);
+        friendGraph.addFriend(1, 2);
+        friendGraph.addFriend(2, 1);
+        friendGraph.addFriend(2, 1);
+
+        assertThat(friendGraph.getFriends(1)).containsExactly(2);
+        assertThat(friendGraph.getFollowers(1)).containsExactly(2);
+    }
+
+    @Test
+    void removingConfirmedFriendLeavesOtherSideRequest() {
+        friendGraph.addFriend(1, 2);
+        friendGraph.addFriend(2, 1);
+
+        friendGraph.removeFriend(1, 2);
+
+        assertThat(friendGraph.getFriends(1)).isEmpty();
+        assertThat(friendGraph.getFriends(2)).containsExactly(1);
+        assertThat(friendGraph.getFollowers(1)).containsExactly(2);
+        assertThat(friendGraph.getFollowers(2)).isEmpty();
+
+        friendGraph.removeFriend(2, 1);
+
+        assertThat(friendGraph.getFriends(2)).isEmpty();
+        assertThat(friendGraph.getFollowers(1)).isEmpty();
+    }
+
+    @Test
+    void mutualFriendsAreIntersectionOfFriendLists() {
+        friendGraph.addFriend(1, 3);
+        friendGraph.addFriend(1, 4);
+        friendGraph.addFriend(1, 5);
+        friendGraph.addFriend(2, 4);
+        friendGraph.addFriend(2, 5);
+        friendGraph.addFriend(2, 6);
+
+        assertThat(friendGraph.getMutualFriends(1, 2)).containsExactly(4, 5);
+    }
+
+    @Test
+    void loadBuildsSameGraphAsIncrementalUpdates() {
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        // Запись (user_id, friend_id) означает, что friend_id добавил user_id: 1 и 2 дружат взаимно, 3 добавил 1
+        Mockito.doAnswer(invocation -> {
+            BiConsumer<Long, Long> consumer = invocation.getArgument(0);
+            consumer.accept(2L, 1L);
+            consumer.accept(1L, 2L);
+            consumer.accept(1L, 3L);
+            return null;
+        }).when(userRepository).forEachFriendship(any());
+        FriendGraph loaded = new FriendGraph(userRepository);
+
+        loaded.load();
+
+        assertThat(loaded.getFriends(1)).containsExactly(2);
+        assertThat(loaded.getFriends(3)).containsExactly(1);
+        assertThat(loaded.getFollowers(1)).containsExactly(2, 3);
+        loaded.addFriend(1, 3);
+        assertThat(loaded.getFriends(1)).containsExactly(2, 3);
+    }
+
+    @Test
+    void changesApplyOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        friendGraph.addFriend(1, 2);
+
+        assertThat(friendGraph.getFriends(1)).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(friendGraph.getFriends(1)).containsExactly(2);
+    }
+
+    @Test
+    void rolledBackChangesAreDropped() {
+        TransactionSynchronizationManager.initSynchronization();
+        friendGraph.addFriend(1, 2);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(friendGraph.getFriends(1)).isEmpty();
+        assertThat(friendGraph.getFollowers(2)).isEmpty();
+    }
+}
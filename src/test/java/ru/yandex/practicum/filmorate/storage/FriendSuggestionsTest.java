@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendSuggestionsTest {
+
+    private final FriendGraph friendGraph = new FriendGraph(null);
+    private final FriendSuggestions friendSuggestions = new FriendSuggestions(friendGraph);
+
+    @BeforeEach
+    void setUp() {
+        addFriends(1, 2, 3);
+        addFriends(4, 2, 3);
+        addFriends(5, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void candidatesAreRankedByMutualFriends() {
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5);
+        assertThat(friendSuggestions.getSuggestions(5, 10)).containsExactly(1, 4);
+        // Уже добавленные друзья не предлагаются
+        addFriends(1, 4);
+        friendSuggestions.invalidate(1, 4);
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(5);
+    }
+
+    @Test
+    void cachedSuggestionsAreKeptUntilInvalidated() {
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5);
+
+        addFriends(6, 2, 3);
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5);
+
+        // Пользователь 1 добавил в друзья 2, поэтому изменение друзей 6 и 2 сбрасывает и его кеш
+        friendSuggestions.invalidate(6, 2);
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 6, 5);
+    }
+
+    @Test
+    void largerLimitIsRecomputed() {
+        assertThat(friendSuggestions.getSuggestions(1, 1)).containsExactly(4);
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5);
+        assertThat(friendSuggestions.getSuggestions(1, 1)).containsExactly(4);
+    }
+
+    @Test
+    void invalidationWaitsForCommit() {
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5);
+        TransactionSynchronizationManager.initSynchronization();
+        addFriends(6, 2, 3);
+        friendSuggestions.invalidate(6, 2);
+        friendSuggestions.invalidate(6, 3);
+
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 6, 5);
+    }
+
+    @Test
+    void invalidateAllDropsEveryEntry() {
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5);
+        addFriends(6, 2);
+
+        friendSuggestions.invalidateAll();
+
+        assertThat(friendSuggestions.getSuggestions(1, 10)).containsExactly(4, 5, 6);
+    }
+
+    private void addFriends(long userId, long... friendIds) {
+        for (long friendId : friendIds) {
+            friendGraph.addFriend(userId, friendId);
+        }
+    }
+}
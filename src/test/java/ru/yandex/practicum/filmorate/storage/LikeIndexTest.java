@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+class LikeIndexTest {
+
+    private final FilmRepository filmRepository = Mockito.mock(FilmRepository.class);
+    private final LikeIndex likeIndex = new LikeIndex(filmRepository);
+
+    @Test
+    void loadBuildsSortedArraysInBothDirections() {
+        likes(new long[][]{{3, 1}, {1, 1}, {2, 2}, {1, 2}, {1, 1}});
+
+        likeIndex.load();
+
+        assertThat(likeIndex.getLikedFilms(1)).containsExactly(1, 3);
+        assertThat(likeIndex.getLikedFilms(2)).containsExactly(1, 2);
+        assertThat(likeIndex.getLikers(1)).containsExactly(1, 2);
+        assertThat(likeIndex.getLikers(3)).containsExactly(1);
+        assertThat(likeIndex.getLikedFilms(3)).isEmpty();
+    }
+
+    @Test
+    void addAndRemoveKeepBothDirectionsInSync() {
+        likeIndex.load();
+
+        assertThat(likeIndex.addLike(5, 1)).isTrue();
+        assertThat(likeIndex.addLike(2, 1)).isTrue();
+        assertThat(likeIndex.addLike(5, 1)).isFalse();
+        assertThat(likeIndex.addLike(5, 3)).isTrue();
+
+        assertThat(likeIndex.getLikedFilms(1)).containsExactly(2, 5);
+        assertThat(likeIndex.getLikers(5)).containsExactly(1, 3);
+        assertThat(likeIndex.hasLike(5, 1)).isTrue();
+
+        assertThat(likeIndex.removeLike(5, 1)).isTrue();
+        assertThat(likeIndex.removeLike(5, 1)).isFalse();
+
+        assertThat(likeIndex.hasLike(5, 1)).isFalse();
+        assertThat(likeIndex.getLikedFilms(1)).containsExactly(2);
+        assertThat(likeIndex.getLikers(5)).containsExactly(3);
+    }
+
+    // Читатель мог получить массив до изменения: массивы заменяются, а не меняются на месте
+    @Test
+    void arraysHandedOutAreNotModified() {
+        likeIndex.load();
+        likeIndex.addLike(1, 1);
+        long[] before = likeIndex.getLikedFilms(1);
+
+        likeIndex.addLike(2, 1);
+        likeIndex.removeLike(1, 1);
+
+        assertThat(before).containsExactly(1);
+    }
+
+    private void likes(long[][] likes) {
+        doAnswer(invocation -> {
+            BiConsumer<Long, Long> consumer = invocation.getArgument(0);
+            for (long[] like : likes) {
+                consumer.accept(like[0], like[1]);
+            }
+            return null;
+        }).when(filmRepository).forEachLike(any());
+    }
+}
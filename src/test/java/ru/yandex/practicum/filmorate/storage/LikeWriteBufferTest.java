@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.GenreRepository;
+import ru.yandex.practicum.filmorate.dal.MpaRepository;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmResultSetExtractor;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Каждый экземпляр буфера изображает отдельный запуск приложения с общим журналом
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({FilmRepository.class, FilmResultSetExtractor.class, FilmRowMapper.class, UserRepository.class,
+        UserRowMapper.class, ReferenceDataCache.class, GenreRepository.class, MpaRepository.class,
+        GenreRowMapper.class, MpaRowMapper.class, LikeIndex.class, FilmLeaderboard.class, TrendingFilms.class,
+        EntityIds.class})
+class LikeWriteBufferTest {
+
+    @Autowired
+    private FilmRepository filmRepository;
+    @Autowired
+    private LikeIndex likeIndex;
+    @Autowired
+    private FilmLeaderboard filmLeaderboard;
+    @Autowired
+    private TrendingFilms trendingFilms;
+    @Autowired
+    private EntityIds entityIds;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path directory;
+
+    private Path journal;
+    private long filmId;
+    private long userId;
+    private final List<LikeWriteBuffer> buffers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+        filmId = jdbcTemplate.queryForObject("SELECT film_id FROM FINAL TABLE (INSERT INTO films(name, " +
+                "description, release_date, duration, mpa_id) VALUES ('f', 'd', DATE '2000-01-01', 90, 1))", Long.class);
+        userId = jdbcTemplate.queryForObject("SELECT user_id FROM FINAL TABLE (INSERT INTO users(email, login, " +
+                "name, birthday) VALUES ('u@b.c', 'u', 'u', DATE '1990-01-01'))", Long.class);
+        entityIds.load();
+        likeIndex.load();
+        journal = directory.resolve("likes.journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (LikeWriteBuffer buffer : buffers) {
+            crash(buffer);
+        }
+    }
+
+    @Test
+    void journalIsReplayedAfterCrash() throws IOException {
+        Instant likedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        LikeWriteBuffer buffer = start();
+        assertThat(buffer.addLike(filmId, userId, likedAt)).isTrue();
+        crash(buffer);
+        assertThat(countLikes()).isZero();
+
+        start();
+
+        assertThat(filmRepository.getLikeTime(filmId, userId)).contains(likedAt);
+        assertThat(likeIndex.hasLike(filmId, userId)).isTrue();
+        assertThat(Files.readString(journal)).isEmpty();
+        assertThat(rejected()).doesNotExist();
+    }
+
+    @Test
+    void removeLikeReturnsTimeOfFlushedLike() throws IOException {
+        Instant likedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        LikeWriteBuffer buffer = start();
+        buffer.addLike(filmId, userId, likedAt);
+        buffer.flush();
+        assertThat(Files.readString(journal)).isEmpty();
+
+        assertThat(buffer.removeLike(filmId, userId)).contains(likedAt);
+        assertThat(buffer.removeLike(filmId, userId)).isEmpty();
+
+        buffer.flush();
+        assertThat(countLikes()).isZero();
+    }
+
+    @Test
+    void rowsOfMissingEntitiesAreRejectedWithoutBlockingStartup() throws IOException {
+        long likedAt = Instant.now().toEpochMilli();
+        Files.writeString(journal, "L " + filmId + " " + userId + " " + likedAt + "\n"
+                + "L " + (filmId + 100) + " " + userId + " " + likedAt + "\n"
+                + "L " + filmId + " " + (userId + 100) + " " + likedAt + "\n"
+                + "L " + filmId + " ÿ\n"
+                + "U " + filmId, StandardCharsets.ISO_8859_1);
+
+        start();
+
+        assertThat(countLikes()).isEqualTo(1);
+        assertThat(Files.readAllLines(rejected())).containsExactlyInAnyOrder(
+                "L " + (filmId + 100) + " " + userId + " " + likedAt,
+                "L " + filmId + " " + (userId + 100) + " " + likedAt);
+    }
+
+    @Test
+    void failedFlushKeepsChangesForNextStart() throws IOException {
+        LikeWriteBuffer buffer = start();
+        buffer.addLike(filmId, userId, Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        // Фильм удален в обход приложения: запись лайка нарушит внешний ключ
+        jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", filmId);
+
+        buffer.flush();
+
+        assertThat(countLikes()).isZero();
+        assertThat(Files.readString(journal)).startsWith("L " + filmId + " " + userId + " ");
+
+        crash(buffer);
+        entityIds.loadFilms();
+        start();
+
+        assertThat(Files.readString(rejected())).startsWith("L " + filmId + " " + userId + " ");
+        assertThat(Files.readString(journal)).isEmpty();
+    }
+
+    private LikeWriteBuffer start() {
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmRepository, likeIndex, filmLeaderboard, trendingFilms,
+                transactionTemplate, entityIds);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "journalPath", journal.toString());
+        ReflectionTestUtils.setField(buffer, "batchSize", 100);
+        buffer.start();
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    // Падение процесса: журнал закрывается без сброса буфера в БД
+    private static void crash(LikeWriteBuffer buffer) throws IOException {
+        ((FileChannel) ReflectionTestUtils.getField(buffer, "journal")).close();
+    }
+
+    private Path rejected() {
+        return journal.resolveSibling("likes.journal.rejected");
+    }
+
+    private int countLikes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+    }
+}
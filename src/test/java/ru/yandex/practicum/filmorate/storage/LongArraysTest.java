@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongArraysTest {
+
+    @Test
+    void insertKeepsOrderAndSkipsDuplicates() {
+        long[] values = LongArrays.EMPTY;
+        values = LongArrays.insert(values, 5);
+        values = LongArrays.insert(values, 1);
+        values = LongArrays.insert(values, 9);
+        values = LongArrays.insert(values, 5);
+
+        assertThat(values).containsExactly(1, 5, 9);
+    }
+
+    @Test
+    void insertAndRemoveDoNotChangeSource() {
+        long[] source = {1, 3};
+
+        assertThat(LongArrays.insert(source, 2)).containsExactly(1, 2, 3);
+        assertThat(LongArrays.remove(source, 1)).containsExactly(3);
+        assertThat(source).containsExactly(1, 3);
+    }
+
+    @Test
+    void removeOfMissingValueReturnsSameArray() {
+        long[] source = {1, 3};
+
+        assertThat(LongArrays.remove(source, 2)).isSameAs(source);
+        assertThat(LongArrays.remove(LongArrays.remove(source, 1), 3)).isEmpty();
+    }
+
+    @Test
+    void unionMergesWithoutDuplicates() {
+        assertThat(LongArrays.union(new long[]{1, 4, 6}, new long[]{2, 4, 7, 8})).containsExactly(1, 2, 4, 6, 7, 8);
+        assertThat(LongArrays.union(LongArrays.EMPTY, new long[]{3})).containsExactly(3);
+        assertThat(LongArrays.union(new long[]{3}, LongArrays.EMPTY)).containsExactly(3);
+    }
+
+    @Test
+    void intersectKeepsCommonValues() {
+        assertThat(LongArrays.intersect(new long[]{1, 4, 6, 9}, new long[]{2, 4, 9, 10})).containsExactly(4, 9);
+        assertThat(LongArrays.intersect(new long[]{1, 2}, new long[]{3, 4})).isEmpty();
+        assertThat(LongArrays.intersect(new long[]{1, 2}, new long[]{1, 2})).containsExactly(1, 2);
+    }
+
+    @Test
+    void sortedDistinctSortsAndDropsRepeats() {
+        assertThat(LongArrays.sortedDistinct(new long[]{5, 1, 5, 3, 1})).containsExactly(1, 3, 5);
+        assertThat(LongArrays.sortedDistinct(new long[0])).isSameAs(LongArrays.EMPTY);
+        assertThat(LongArrays.contains(new long[]{1, 3, 5}, 3)).isTrue();
+        assertThat(LongArrays.contains(new long[]{1, 3, 5}, 4)).isFalse();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIntHashMapTest {
+
+    // Размер таблицы по умолчанию и формула слота повторяют LongIntHashMap: тест подбирает ключи с нужными слотами
+    private static final int CAPACITY = 32;
+
+    @Test
+    void addToAccumulatesValues() {
+        LongIntHashMap map = new LongIntHashMap();
+
+        assertThat(map.addTo(5, 2)).isEqualTo(2);
+        assertThat(map.addTo(5, 3)).isEqualTo(5);
+        assertThat(map.addTo(-7, 1)).isEqualTo(1);
+
+        assertThat(map.get(5)).isEqualTo(5);
+        assertThat(map.get(-7)).isEqualTo(1);
+        assertThat(map.get(6)).isZero();
+        assertThat(map.containsKey(6)).isFalse();
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    // Цепочка из последнего слота переходит через край таблицы в начало. Удаление ее головы должно сдвинуть
+    // назад все ключи цепочки, иначе поиск остановится на освободившемся слоте
+    @Test
+    void removeShiftsChainWrappingAroundTableEnd() {
+        List<Long> lastSlot = keysWithSlot(CAPACITY - 1, 3);
+        long firstSlot = keysWithSlot(0, 1).getFirst();
+        LongIntHashMap map = new LongIntHashMap();
+        for (long key : lastSlot) {
+            map.addTo(key, (int) key);
+        }
+        map.addTo(firstSlot, 100);
+
+        map.remove(lastSlot.getFirst());
+
+        assertThat(map.containsKey(lastSlot.getFirst())).isFalse();
+        assertThat(map.get(lastSlot.get(1))).isEqualTo(lastSlot.get(1).intValue());
+        assertThat(map.get(lastSlot.get(2))).isEqualTo(lastSlot.get(2).intValue());
+        assertThat(map.get(firstSlot)).isEqualTo(100);
+        assertThat(map.size()).isEqualTo(3);
+
+        map.remove(firstSlot);
+        map.remove(lastSlot.get(1));
+
+        assertThat(map.get(lastSlot.get(2))).isEqualTo(lastSlot.get(2).intValue());
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void matchesHashMapOnRandomOperations() {
+        SplittableRandom random = new SplittableRandom(3);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.addTo(key, 1);
+                expected.merge(key, 1, Integer::sum);
+            }
+        }
+
+        Map<Long, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(map.size()).isEqualTo(expected.size());
+    }
+
+    private static List<Long> keysWithSlot(int slot, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < count; key++) {
+            if ((Long.hashCode(key * 0x9E3779B97F4A7C15L) & (CAPACITY - 1)) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongTopKTest {
+
+    @Test
+    void bestScoresComeFirst() {
+        LongTopK top = new LongTopK(3);
+        top.offer(1, 1);
+        top.offer(2, 5);
+        top.offer(3, 3);
+        top.offer(4, 4);
+        top.offer(5, 2);
+
+        assertThat(top.isFull()).isTrue();
+        assertThat(top.worstScore()).isEqualTo(3);
+        assertThat(top.toSortedArray()).containsExactly(2, 4, 3);
+        assertThat(top.size()).isZero();
+    }
+
+    @Test
+    void tiesPreferSmallerId() {
+        LongTopK top = new LongTopK(2);
+        top.offer(9, 1);
+        top.offer(7, 1);
+        top.offer(8, 1);
+        top.offer(3, 1);
+
+        assertThat(top.toSortedArray()).containsExactly(3, 7);
+    }
+
+    @Test
+    void fewerCandidatesThanCapacity() {
+        LongTopK top = new LongTopK(5);
+        top.offer(2, 1);
+        top.offer(1, 1);
+
+        assertThat(top.isFull()).isFalse();
+        assertThat(top.toSortedArray()).containsExactly(1, 2);
+        assertThat(new LongTopK(0).toSortedArray()).isEmpty();
+    }
+
+    @Test
+    void matchesFullSortOnRandomInput() {
+        SplittableRandom random = new SplittableRandom(1);
+        long[] ids = LongStream.range(0, 1_000).toArray();
+        double[] scores = IntStream.range(0, ids.length).mapToDouble(i -> random.nextInt(50)).toArray();
+        LongTopK top = new LongTopK(20);
+        for (int i = 0; i < ids.length; i++) {
+            top.offer(ids[i], scores[i]);
+        }
+
+        long[] expected = IntStream.range(0, ids.length).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> scores[i]).reversed()
+                        .thenComparingLong(i -> ids[i]))
+                .limit(20)
+                .mapToLong(i -> ids[i])
+                .toArray();
+        assertThat(top.toSortedArray()).containsExactly(expected);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PagedBitSetTest {
+
+    private static final long PAGE = 1 << 16;
+
+    private final PagedBitSet set = new PagedBitSet();
+
+    @Test
+    void valuesAtPageBoundariesAreKeptApart() {
+        long[] values = {0, 63, 64, PAGE - 1, PAGE, PAGE + 1, 3 * PAGE - 1, Long.MAX_VALUE};
+        for (long value : values) {
+            assertThat(set.add(value)).isTrue();
+        }
+
+        for (long value : values) {
+            assertThat(set.contains(value)).as("значение %d", value).isTrue();
+        }
+        for (long value : new long[]{1, 62, 65, PAGE - 2, PAGE + 2, 2 * PAGE - 1, 2 * PAGE, 3 * PAGE,
+                Long.MAX_VALUE - 1}) {
+            assertThat(set.contains(value)).as("значение %d", value).isFalse();
+        }
+        assertThat(set.size()).isEqualTo(values.length);
+    }
+
+    @Test
+    void pagesAreCreatedOnlyForUsedRanges() {
+        set.add(5 * PAGE + 7);
+        set.add(PAGE + 3);
+        set.add(5 * PAGE);
+        set.add(1_000 * PAGE);
+
+        assertThat(set.pageBytes()).isEqualTo(3 * PAGE / 8);
+        assertThat(set.contains(PAGE + 3)).isTrue();
+        assertThat(set.contains(5 * PAGE + 7)).isTrue();
+        assertThat(set.contains(1_000 * PAGE)).isTrue();
+        assertThat(set.contains(3)).isFalse();
+    }
+
+    @Test
+    void repeatedAddDoesNotChangeSize() {
+        assertThat(set.add(42)).isTrue();
+        assertThat(set.add(42)).isFalse();
+
+        assertThat(set.size()).isEqualTo(1);
+    }
+
+    @Test
+    void negativeValuesAreRejected() {
+        assertThat(set.contains(-1)).isFalse();
+        assertThatThrownBy(() -> set.add(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
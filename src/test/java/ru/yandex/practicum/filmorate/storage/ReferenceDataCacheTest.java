@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.GenreRepository;
+import ru.yandex.practicum.filmorate.dal.MpaRepository;
+import ru.yandex.practicum.filmorate.dal.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@Import({ReferenceDataCache.class, GenreRepository.class, MpaRepository.class, GenreRowMapper.class,
+        MpaRowMapper.class})
+class ReferenceDataCacheTest {
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void refreshPicksUpGenresAddedInDatabase() {
+        int genres = referenceDataCache.getAllGenres().size();
+        long version = referenceDataCache.getVersion();
+        jdbcTemplate.update("INSERT INTO genres(genre_id, name) VALUES (100, 'Вестерн')");
+
+        assertThat(referenceDataCache.getGenreById(100)).isEmpty();
+
+        referenceDataCache.refresh();
+
+        assertThat(referenceDataCache.getAllGenres()).hasSize(genres + 1);
+        assertThat(referenceDataCache.getGenreById(100)).map(Genre::getName).contains("Вестерн");
+        // От версии зависит ETag справочников: без ее роста клиенты получали бы 304 со старым списком
+        assertThat(referenceDataCache.getVersion()).isGreaterThan(version);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrendingFilmsTest {
+
+    private static final Duration HOUR = Duration.ofHours(1);
+    private static final Duration MONTH = Duration.ofDays(30);
+
+    private final TrendingFilms trendingFilms = new TrendingFilms(Mockito.mock(FilmRepository.class));
+
+    @Test
+    void recentLikesOutweighOldOnesInShortWindow() {
+        start(HOUR, MONTH);
+        Instant now = Instant.now();
+        // Три лайка трехчасовой давности в часовом окне весят 3/8, а в месячном - почти 3
+        for (int i = 0; i < 3; i++) {
+            trendingFilms.addLike(1, now.minus(HOUR.multipliedBy(3)));
+        }
+        trendingFilms.addLike(2, now);
+
+        assertThat(trendingFilms.getTop(HOUR, 10)).containsExactly(2L, 1L);
+        assertThat(trendingFilms.getTop(MONTH, 10)).containsExactly(1L, 2L);
+        assertThat(trendingFilms.getTop(MONTH, 1)).containsExactly(1L);
+    }
+
+    @Test
+    void equalScoresAreOrderedById() {
+        start(HOUR);
+        Instant likedAt = Instant.now();
+        trendingFilms.addLike(3, likedAt);
+        trendingFilms.addLike(1, likedAt);
+        trendingFilms.addLike(2, likedAt);
+
+        assertThat(trendingFilms.getTop(HOUR, 10)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void removedLikesLeaveNoScore() {
+        start(HOUR);
+        Instant first = Instant.now().minus(Duration.ofMinutes(30));
+        Instant second = Instant.now();
+        trendingFilms.addLike(1, first);
+        trendingFilms.addLike(1, second);
+        trendingFilms.addLike(2, second);
+
+        trendingFilms.removeLike(1, first);
+        trendingFilms.removeLike(1, second);
+
+        assertThat(trendingFilms.getTop(HOUR, 10)).containsExactly(2L);
+    }
+
+    @Test
+    void likesOlderThanHorizonAreIgnored() {
+        start(HOUR);
+        trendingFilms.addLike(1, Instant.now().minus(HOUR.multipliedBy(30)));
+
+        assertThat(trendingFilms.getTop(HOUR, 10)).isEmpty();
+    }
+
+    // Окно в 100 мс: за время ожидания вес лайка заметно падает, и перемасштабирование меняет все оценки
+    @Test
+    void rescaleKeepsOrderAndLikesCanStillBeRemoved() throws InterruptedException {
+        Duration window = Duration.ofMillis(100);
+        start(window);
+        Instant likedAt = Instant.now();
+        trendingFilms.addLike(1, likedAt);
+        trendingFilms.addLike(1, likedAt);
+        trendingFilms.addLike(2, likedAt);
+        Thread.sleep(150);
+
+        trendingFilms.rescale();
+
+        assertThat(trendingFilms.getTop(window, 10)).containsExactly(1L, 2L);
+        trendingFilms.removeLike(1, likedAt);
+        trendingFilms.removeLike(1, likedAt);
+        assertThat(trendingFilms.getTop(window, 10)).containsExactly(2L);
+        trendingFilms.addLike(1, Instant.now());
+        assertThat(trendingFilms.getTop(window, 10)).containsExactly(1L, 2L);
+    }
+
+    private void start(Duration... windows) {
+        ReflectionTestUtils.setField(trendingFilms, "windows", List.of(windows));
+        trendingFilms.load();
+    }
+}